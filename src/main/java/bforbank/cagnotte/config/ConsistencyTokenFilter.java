@@ -0,0 +1,38 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.service.ReplicaRouter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filter passing the consistency token of a request, from its Consistency-Token header, to the ReplicaContext.
+ * A token that is not a GTID position is ignored.
+ */
+@Component
+public class ConsistencyTokenFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReplicaContext.setWriteToken(parse(request.getHeader(ReplicaRouter.CONSISTENCY_TOKEN_HEADER)));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaContext.setWriteToken(null);
+        }
+    }
+
+    private static String parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        String position = token.trim();
+        return ReplicaRouter.isValidToken(position) ? position : null;
+    }
+}
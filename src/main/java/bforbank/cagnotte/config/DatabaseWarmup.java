@@ -0,0 +1,173 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.JournalCheckpointRepository;
+import bforbank.cagnotte.repository.LedgerSnapshotRepository;
+import bforbank.cagnotte.repository.OutboxEventRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import bforbank.cagnotte.service.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Component warming up the database access at startup, when enabled in the configuration.
+ * It opens every connection of the pools, so that the first requests do not pay for opening them, and runs each
+ * repository query once, in transactions that are rolled back, so that Hibernate query plans, Spring Data proxies
+ * and the JIT are ready. The queries scanning a whole table (global statistics, compaction and count verification)
+ * are left out. With sharding, every shard is warmed up; with read replicas, every replica too.
+ * It runs before the application is ready, so the readiness probe only accepts traffic once it is done.
+ */
+@Component
+public class DatabaseWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseWarmup.class);
+
+    private final DataSource dataSource;
+    private final ClientRepository clientRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerSnapshotRepository snapshotRepository;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final OutboxEventRepository outboxRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final boolean enabled;
+
+    /**
+     * Constructor for DatabaseWarmup.
+     *
+     * @param dataSource            The datasource whose pools are filled.
+     * @param clientRepository      The repository to handle client related database operations.
+     * @param transactionRepository The repository to handle transaction related database operations.
+     * @param snapshotRepository    The repository to handle ledger snapshot related database operations.
+     * @param checkpointRepository  The repository to handle journal checkpoint related database operations.
+     * @param outboxRepository      The repository to handle outbox related database operations.
+     * @param shardRouter           The router running the warm-up on each shard.
+     * @param transactionManager    The transaction manager, used to roll back the warm-up queries.
+     * @param enabled               Whether the warm-up runs at startup.
+     */
+    public DatabaseWarmup(DataSource dataSource, ClientRepository clientRepository, TransactionRepository transactionRepository,
+                          LedgerSnapshotRepository snapshotRepository, JournalCheckpointRepository checkpointRepository,
+                          OutboxEventRepository outboxRepository, ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                          @Value("${cagnotte.warmup.enabled:false}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.clientRepository = clientRepository;
+        this.transactionRepository = transactionRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.outboxRepository = outboxRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Runs the warm-up, if enabled, before the application is ready.
+     *
+     * @param args The arguments of the application.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Fills the connection pools and runs each repository query once, on every shard and every replica.
+     *
+     * @throws IllegalStateException if a connection cannot be opened.
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int current = shard;
+            shardRouter.onShard(current, () -> {
+                fillPool();
+                transactionTemplate.executeWithoutResult(status -> {
+                    runReadQueries();
+                    runWriteQueries();
+                    status.setRollbackOnly();
+                });
+                return null;
+            });
+        }
+        if (dataSource instanceof ReplicaRoutingDataSource replicas) {
+            for (int replica = 0; replica < replicas.getReplicaCount(); replica++) {
+                ReplicaContext.setReplica(replica);
+                try {
+                    fillPool();
+                    readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                        runReadQueries();
+                        status.setRollbackOnly();
+                    });
+                } finally {
+                    ReplicaContext.setReplica(null);
+                }
+            }
+        }
+        log.info("Database warm-up done in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void fillPool() {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            try {
+                int size = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+                for (int i = 0; i < size; i++) {
+                    connections.add(dataSource.getConnection());
+                }
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot fill the connection pool", e);
+        }
+    }
+
+    private void runReadQueries() {
+        clientRepository.findById(-1);
+        clientRepository.findAllById(List.of(-1));
+        clientRepository.findByName("");
+        clientRepository.findByNameIn(List.of(""));
+        clientRepository.findLedgerBalance(-1);
+        clientRepository.findLedgerBalances(List.of(-1));
+        transactionRepository.findByClientId(-1);
+        transactionRepository.findByClientIdAndIdGreaterThanOrderByIdAsc(-1, 0, Limit.of(1));
+        transactionRepository.streamByClientId(-1).close();
+        transactionRepository.findByClientIdAndIdempotencyKey(-1, "");
+        transactionRepository.countByClientId(-1);
+        transactionRepository.sumAmountBySnapshotId(-1, -1);
+        transactionRepository.aggregateByClientId(-1);
+        transactionRepository.aggregateByClientIdAndBucket(-1, Instant.EPOCH, Instant.EPOCH, 1);
+        transactionRepository.aggregateByBucket(Instant.EPOCH, Instant.EPOCH, 1);
+        snapshotRepository.findByClientIdOrderByIdAsc(-1);
+        checkpointRepository.findById("");
+        outboxRepository.findByOrderByIdAsc(Limit.of(1));
+    }
+
+    private void runWriteQueries() {
+        clientRepository.applyTransactions(-1, 0, 0);
+        transactionRepository.assignLedgerTail(-1, -1);
+        checkpointRepository.lockByJournal("");
+    }
+}
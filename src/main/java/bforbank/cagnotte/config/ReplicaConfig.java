@@ -0,0 +1,83 @@
+package bforbank.cagnotte.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the read replicas, enabled by cagnotte.replica.enabled.
+ * It replaces the single datasource by a pool for the primary database, of spring.datasource.url, and one pool per
+ * replica of cagnotte.replica.urls, behind a ReplicaRoutingDataSource. The schema is managed on the primary only.
+ * The pools are named primary, replica-0, replica-1... in the hikaricp.* metrics.
+ * The read replicas cannot be combined with the sharding mode.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cagnotte.replica.enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    private final List<String> urls;
+
+    /**
+     * Constructor for ReplicaConfig.
+     *
+     * @param urls            The JDBC URLs of the replicas.
+     * @param shardingEnabled Whether the sharding mode is enabled.
+     * @throws IllegalStateException if the sharding mode is enabled too.
+     */
+    public ReplicaConfig(@Value("${cagnotte.replica.urls}") List<String> urls,
+                         @Value("${cagnotte.sharding.enabled:false}") boolean shardingEnabled) {
+        if (shardingEnabled) {
+            throw new IllegalStateException("Read replicas cannot be enabled with the sharding mode");
+        }
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("cagnotte.replica.urls must list at least one replica");
+        }
+        this.urls = urls;
+    }
+
+    /**
+     * Creates the datasource routing connections to the primary or to the replicas.
+     *
+     * @param url                    The JDBC URL of the primary database.
+     * @param username               The database username, shared by the primary and the replicas.
+     * @param password               The database password, shared by the primary and the replicas.
+     * @param maximumPoolSize        The maximum number of connections of the pool of the primary.
+     * @param replicaMaximumPoolSize The maximum number of connections of the pool of each replica.
+     * @param meterRegistry          The registry the pool metrics are published to.
+     * @return The routing datasource.
+     */
+    @Bean
+    public ReplicaRoutingDataSource dataSource(@Value("${spring.datasource.url}") String url,
+                                               @Value("${spring.datasource.username:}") String username,
+                                               @Value("${spring.datasource.password:}") String password,
+                                               @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize,
+                                               @Value("${cagnotte.replica.maximum-pool-size:10}") int replicaMaximumPoolSize,
+                                               MeterRegistry meterRegistry) {
+        HikariDataSource primary = createPool("primary", url, username, password, maximumPoolSize, meterRegistry);
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int replica = 0; replica < urls.size(); replica++) {
+            replicas.add(createPool("replica-" + replica, urls.get(replica), username, password, replicaMaximumPoolSize,
+                    meterRegistry));
+        }
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    private static HikariDataSource createPool(String name, String url, String username, String password,
+                                               int maximumPoolSize, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+}
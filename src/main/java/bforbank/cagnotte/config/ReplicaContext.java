@@ -0,0 +1,61 @@
+package bforbank.cagnotte.config;
+
+/**
+ * Holder of the read routing state of the current thread.
+ * The ReplicaRoutingDataSource hands out a connection of the selected replica while a replica read is in progress,
+ * and a primary one otherwise.
+ * The consistency token of the current request is the replication position of the last write of its client,
+ * so that its reads are only sent to a replica that has applied that write.
+ */
+public final class ReplicaContext {
+
+    private static final ThreadLocal<Integer> REPLICA = new ThreadLocal<>();
+    private static final ThreadLocal<String> WRITE_TOKEN = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    /**
+     * Gets the replica read on the current thread.
+     *
+     * @return The index of the replica connections should come from, or null if they should come from the primary.
+     */
+    public static Integer getReplica() {
+        return REPLICA.get();
+    }
+
+    /**
+     * Starts or ends a replica read on the current thread.
+     *
+     * @param replica The index of the replica to take connections from, or null to take them from the primary.
+     */
+    public static void setReplica(Integer replica) {
+        if (replica == null) {
+            REPLICA.remove();
+        } else {
+            REPLICA.set(replica);
+        }
+    }
+
+    /**
+     * Gets the consistency token of the current request.
+     *
+     * @return The replication position of the last write of the client, or null if unknown.
+     */
+    public static String getWriteToken() {
+        return WRITE_TOKEN.get();
+    }
+
+    /**
+     * Sets the consistency token of the current request.
+     *
+     * @param writeToken The replication position of the last write of the client, or null to clear it.
+     */
+    public static void setWriteToken(String writeToken) {
+        if (writeToken == null) {
+            WRITE_TOKEN.remove();
+        } else {
+            WRITE_TOKEN.set(writeToken);
+        }
+    }
+}
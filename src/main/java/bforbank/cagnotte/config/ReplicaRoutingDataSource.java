@@ -0,0 +1,97 @@
+package bforbank.cagnotte.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource routing connection requests to the primary pool, or to the pool of the replica selected for a replica read.
+ * Since JPA transactions take their connection when they begin, the replica read must be started before the transaction.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * Constructor for ReplicaRoutingDataSource.
+     *
+     * @param primary  The connection pool of the primary database, which receives the writes.
+     * @param replicas The connection pools of the replicas. Cannot be empty.
+     */
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            targets.put(replica, replicas.get(replica));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Selects the replicas in turn, so that reads are spread over them.
+     *
+     * @return The index of the next replica to read from.
+     */
+    public int nextReplica() {
+        return Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+    }
+
+    /**
+     * Gets the connection pool of the primary database.
+     *
+     * @return The pool of the primary.
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Gets the connection pool of a replica.
+     *
+     * @param replica The index of the replica.
+     * @return The pool of the replica.
+     */
+    public DataSource getReplica(int replica) {
+        return replicas.get(replica);
+    }
+
+    /**
+     * Gets the number of replicas.
+     *
+     * @return The number of replicas.
+     */
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer replica = ReplicaContext.getReplica();
+        return replica != null ? replica : PRIMARY;
+    }
+
+    /**
+     * Closes the connection pools of the primary and of the replicas.
+     */
+    @Override
+    public void close() {
+        List<HikariDataSource> pools = new ArrayList<>(replicas);
+        pools.add(primary);
+        pools.forEach(HikariDataSource::close);
+    }
+}
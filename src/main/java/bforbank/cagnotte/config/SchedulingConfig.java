@@ -0,0 +1,12 @@
+package bforbank.cagnotte.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration enabling the @Scheduled background jobs, such as the compaction of the ledger tails.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,132 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.entities.ShardSequenceGenerator;
+import bforbank.cagnotte.service.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+
+/**
+ * Component applying the data migrations that Hibernate's schema update cannot do on its own.
+ * It runs once the schema has been created or updated, before the web server starts accepting requests, on every shard.
+ */
+@Component
+public class SchemaMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    // Size of the blocks of ids the generator of the entities reads from a sequence
+    private static final int ALLOCATION_SIZE = Integer.parseInt(ShardSequenceGenerator.INCREMENT_SIZE);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    /**
+     * Constructor for SchemaMigrator.
+     *
+     * @param jdbcTemplate         The template used to run the migration statements.
+     * @param shardRouter          The router running the migrations on each shard.
+     * @param entityManagerFactory The JPA entity manager factory. Injected so that the schema exists before migrating.
+     */
+    public SchemaMigrator(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Runs all the migrations, on every shard.
+     */
+    @PostConstruct
+    public void migrate() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            shardRouter.onShard(shard, () -> {
+                boolean h2 = "H2".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                        connection.getMetaData().getDatabaseProductName()));
+                alignSequence("client", "client_seq", h2);
+                alignSequence("transaction", "transaction_seq", h2);
+                backfillTransactionCounts();
+                backfillCents("client", "cagnotte", "cagnotte_cents");
+                backfillCents("transaction", "amount", "amount_cents");
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Fills a cents column from the Float column it replaces.
+     * Hibernate adds the cents column with null values next to the legacy column, which is left in place
+     * and can be dropped once the migration has run. Without a legacy column, there is nothing to fill.
+     *
+     * @param table        The table to migrate.
+     * @param legacyColumn The Float column holding the amount.
+     * @param centsColumn  The BIGINT column holding the amount in cents.
+     */
+    private void backfillCents(String table, String legacyColumn, String centsColumn) {
+        boolean hasLegacyColumn = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet columns = connection.getMetaData().getColumns(connection.getCatalog(), null, table, legacyColumn)) {
+                return columns.next();
+            }
+        }));
+        if (!hasLegacyColumn) {
+            return;
+        }
+        int updated = jdbcTemplate.update("update " + table + " set " + centsColumn + " = coalesce(round(" + legacyColumn
+                + " * 100), 0) where " + centsColumn + " is null");
+        if (updated > 0) {
+            log.info("Column {}.{} backfilled from {} for {} rows", table, centsColumn, legacyColumn, updated);
+        }
+    }
+
+    /**
+     * Fills the transaction count of the clients created before the column existed.
+     * Hibernate adds the column with null values; they are computed once from the transaction table.
+     */
+    private void backfillTransactionCounts() {
+        int updated = jdbcTemplate.update("update client set transaction_count ="
+                + " (select count(*) from transaction t where t.client_id = client.id and t.snapshot_id is not null)"
+                + " where transaction_count is null");
+        if (updated > 0) {
+            log.info("Transaction count backfilled for {} clients", updated);
+        }
+    }
+
+    /**
+     * Moves an id sequence past the ids already used in its table.
+     * Rows created while the table used an IDENTITY column would otherwise collide with the ids handed out by the sequence.
+     * The pooled optimizer hands out the block (value - allocationSize, value], so the next value must exceed
+     * the highest id by more than one allocation block. With sharding, the ids are the values of the sequence
+     * times the number of shards, plus the shard index, so the highest id is divided by the number of shards.
+     * No value is taken from the sequence, which would skip a block of ids on every startup:
+     * H2 exposes the next value in its information schema, and the sequence is only restarted when it is behind,
+     * while the setval of MariaDB only ever moves a sequence forward.
+     *
+     * @param table    The table whose ids come from the sequence.
+     * @param sequence The sequence to align.
+     * @param h2       Whether the database is H2 rather than MariaDB.
+     */
+    private void alignSequence(String table, String sequence, boolean h2) {
+        long maxValue = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class)
+                / shardRouter.getShardCount();
+        long minimum = maxValue + ALLOCATION_SIZE + 1;
+        boolean moved;
+        if (h2) {
+            long nextValue = jdbcTemplate.queryForObject(
+                    "select base_value from information_schema.sequences where sequence_name = ?", Long.class, sequence);
+            moved = nextValue < minimum;
+            if (moved) {
+                jdbcTemplate.execute("alter sequence " + sequence + " restart with " + minimum);
+            }
+        } else {
+            moved = jdbcTemplate.queryForObject("select setval(" + sequence + ", " + (minimum - 1) + ")", Long.class) != null;
+        }
+        if (moved) {
+            log.info("Sequence {} moved past {} to skip the existing ids of table {}", sequence, minimum - 1, table);
+        }
+    }
+}
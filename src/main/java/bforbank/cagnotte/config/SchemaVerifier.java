@@ -0,0 +1,143 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.service.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Component checking at startup that the indexes the queries rely on exist in the database.
+ * Hibernate's schema update does not always create them on existing tables (for instance a unique
+ * constraint cannot be added while duplicate names exist), and without them the lookups become full table scans.
+ * With sharding, every shard is checked.
+ */
+@Component
+public class SchemaVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaVerifier.class);
+
+    /**
+     * Index expected in the database.
+     *
+     * @param table   The table of the index.
+     * @param columns The leading columns of the index, in order.
+     * @param unique  Whether the index must be unique.
+     * @param ddl     The statement creating the index.
+     */
+    public record ExpectedIndex(String table, List<String> columns, boolean unique, String ddl) {
+    }
+
+    private static final List<ExpectedIndex> EXPECTED_INDEXES = List.of(
+            new ExpectedIndex("client", List.of("name"), true,
+                    "alter table client add constraint uk_client_name unique (name)"),
+            new ExpectedIndex("transaction", List.of("client_id", "id"), false,
+                    "create index ix_transaction_client_id_id on transaction (client_id, id)"),
+            new ExpectedIndex("transaction", List.of("client_id", "snapshot_id"), false,
+                    "create index ix_transaction_client_id_snapshot_id on transaction (client_id, snapshot_id)"),
+            new ExpectedIndex("transaction", List.of("client_id", "created_at"), false,
+                    "create index ix_transaction_client_id_created_at on transaction (client_id, created_at)"),
+            new ExpectedIndex("transaction", List.of("created_at"), false,
+                    "create index ix_transaction_created_at on transaction (created_at)"),
+            new ExpectedIndex("transaction", List.of("client_id", "idempotency_key"), true,
+                    "alter table transaction add constraint uk_transaction_client_id_idempotency_key unique (client_id, idempotency_key)"));
+
+    private final DataSource dataSource;
+    private final ShardRouter shardRouter;
+
+    /**
+     * Constructor for SchemaVerifier.
+     *
+     * @param dataSource           The datasource whose schema is checked.
+     * @param shardRouter          The router running the check on each shard.
+     * @param entityManagerFactory The JPA entity manager factory. Injected so that the schema exists before checking it.
+     */
+    public SchemaVerifier(DataSource dataSource, ShardRouter shardRouter, EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Logs a warning for each expected index missing from the database of a shard.
+     */
+    @PostConstruct
+    public void warnOnMissingIndexes() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int current = shard;
+            shardRouter.onShard(current, () -> {
+                try {
+                    for (ExpectedIndex index : findMissingIndexes()) {
+                        log.warn("Missing {}index on {}({}) of shard {}: queries on this table will do full scans. Create it with: {}",
+                                index.unique() ? "unique " : "", index.table(), String.join(", ", index.columns()), current, index.ddl());
+                    }
+                } catch (SQLException e) {
+                    log.warn("Unable to check the database indexes of shard {}", current, e);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Finds the expected indexes missing from the database of the current shard.
+     * An expected index is present if an index of the table starts with its columns, in the same order,
+     * and is unique when required.
+     *
+     * @return The expected indexes missing from the database.
+     * @throws SQLException if the database metadata cannot be read.
+     */
+    public List<ExpectedIndex> findMissingIndexes() throws SQLException {
+        List<ExpectedIndex> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (ExpectedIndex expected : EXPECTED_INDEXES) {
+                boolean found = false;
+                for (IndexColumns index : readIndexes(metaData, connection.getCatalog(), expected.table())) {
+                    if (index.columns().size() >= expected.columns().size()
+                            && index.columns().subList(0, expected.columns().size()).equals(expected.columns())
+                            && (index.unique() || !expected.unique())) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    missing.add(expected);
+                }
+            }
+        }
+        return missing;
+    }
+
+    private static List<IndexColumns> readIndexes(DatabaseMetaData metaData, String catalog, String table) throws SQLException {
+        Map<String, Map<Short, String>> columnsByIndex = new TreeMap<>();
+        Map<String, Boolean> uniqueByIndex = new TreeMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(catalog, null, table, false, true)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (name == null || column == null) {
+                    continue;
+                }
+                columnsByIndex.computeIfAbsent(name, k -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase());
+                uniqueByIndex.put(name, !rs.getBoolean("NON_UNIQUE"));
+            }
+        }
+        List<IndexColumns> indexes = new ArrayList<>();
+        columnsByIndex.forEach((name, columns) -> indexes.add(new IndexColumns(new ArrayList<>(columns.values()), uniqueByIndex.get(name))));
+        return indexes;
+    }
+
+    private record IndexColumns(List<String> columns, boolean unique) {
+    }
+}
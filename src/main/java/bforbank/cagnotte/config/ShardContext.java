@@ -0,0 +1,40 @@
+package bforbank.cagnotte.config;
+
+/**
+ * Holder of the shard the current thread works on.
+ * The ShardRoutingDataSource hands out connections to this shard, and the ShardSequenceGenerator allocates ids for it.
+ * It is set by the ShardRouter; a thread that never set it works on shard 0, the only shard when sharding is disabled.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Gets the shard the current thread works on.
+     *
+     * @return The index of the shard, 0 if none was set.
+     */
+    public static int getCurrentShard() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    /**
+     * Sets the shard the current thread works on.
+     *
+     * @param shard The index of the shard, or null to clear it.
+     * @return The shard previously set, or null if none was set, to restore once done.
+     */
+    public static Integer setCurrentShard(Integer shard) {
+        Integer previous = CURRENT_SHARD.get();
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+        return previous;
+    }
+}
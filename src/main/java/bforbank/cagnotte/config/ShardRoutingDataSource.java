@@ -0,0 +1,55 @@
+package bforbank.cagnotte.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource routing each connection request to the pool of the shard set in the ShardContext.
+ * Since JPA transactions take their connection when they begin, the shard must be set before a transaction starts.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final List<HikariDataSource> shards;
+
+    /**
+     * Constructor for ShardRoutingDataSource.
+     *
+     * @param shards The connection pools of the shards, by shard index.
+     */
+    public ShardRoutingDataSource(List<HikariDataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.getCurrentShard();
+    }
+
+    /**
+     * Closes the connection pools of all the shards.
+     */
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
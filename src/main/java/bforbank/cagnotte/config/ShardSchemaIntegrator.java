@@ -0,0 +1,58 @@
+package bforbank.cagnotte.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.DelayedDropAction;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate integrator applying the schema management action (spring.jpa.hibernate.ddl-auto) to every shard.
+ * Hibernate itself only manages the schema of the database its connections come from by default, shard 0;
+ * the integrator runs the same action on the other shards, and their delayed drop when the action is create-drop.
+ */
+public class ShardSchemaIntegrator implements Integrator {
+
+    private final int shardCount;
+    private final Map<Integer, DelayedDropAction> dropActions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for ShardSchemaIntegrator.
+     *
+     * @param shardCount The number of shards.
+     */
+    public ShardSchemaIntegrator(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        for (int shard = 1; shard < shardCount; shard++) {
+            int target = shard;
+            Integer previous = ShardContext.setCurrentShard(target);
+            try {
+                SchemaManagementToolCoordinator.process(metadata, sessionFactory.getServiceRegistry(), sessionFactory.getProperties(),
+                        action -> dropActions.put(target, action));
+            } finally {
+                ShardContext.setCurrentShard(previous);
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        dropActions.forEach((shard, action) -> {
+            Integer previous = ShardContext.setCurrentShard(shard);
+            try {
+                action.perform(sessionFactory.getServiceRegistry());
+            } finally {
+                ShardContext.setCurrentShard(previous);
+            }
+        });
+    }
+}
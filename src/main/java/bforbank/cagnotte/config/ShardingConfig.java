@@ -0,0 +1,80 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.entities.ShardSequenceGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the sharding mode, enabled by cagnotte.sharding.enabled.
+ * It replaces the single datasource by one connection pool per database of cagnotte.sharding.urls, behind a
+ * ShardRoutingDataSource, and tells Hibernate the number of shards, for the schema and for the id generators.
+ * The pools are named shard-0, shard-1... in the hikaricp.* metrics.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cagnotte.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private final List<String> urls;
+
+    /**
+     * Constructor for ShardingConfig.
+     *
+     * @param urls The JDBC URLs of the shards, in shard order.
+     */
+    public ShardingConfig(@Value("${cagnotte.sharding.urls}") List<String> urls) {
+        this.urls = urls;
+    }
+
+    /**
+     * Creates the datasource routing connections to the shards.
+     *
+     * @param username        The database username, shared by all the shards.
+     * @param password        The database password, shared by all the shards.
+     * @param maximumPoolSize The maximum number of connections of the pool of each shard.
+     * @param meterRegistry   The registry the pool metrics are published to.
+     * @return The routing datasource.
+     */
+    @Bean
+    public ShardRoutingDataSource dataSource(@Value("${spring.datasource.username:}") String username,
+                                             @Value("${spring.datasource.password:}") String password,
+                                             @Value("${cagnotte.sharding.maximum-pool-size:10}") int maximumPoolSize,
+                                             MeterRegistry meterRegistry) {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size());
+        for (int shard = 0; shard < urls.size(); shard++) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setJdbcUrl(urls.get(shard));
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+            dataSource.setMaximumPoolSize(maximumPoolSize);
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Passes the number of shards to Hibernate, and registers the integrator creating or updating the schema of every shard.
+     *
+     * @return The customizer of the Hibernate properties.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer shardingHibernateProperties() {
+        return properties -> {
+            properties.put(ShardSequenceGenerator.SHARD_COUNT, urls.size());
+            properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                    (IntegratorProvider) () -> List.of(new ShardSchemaIntegrator(urls.size())));
+        };
+    }
+}
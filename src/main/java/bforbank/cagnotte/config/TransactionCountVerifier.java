@@ -0,0 +1,69 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.service.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Component checking that the transaction count kept on each client matches the number of their transactions.
+ * The check scans the whole transaction table, so it only runs at startup when enabled in the configuration.
+ */
+@Component
+public class TransactionCountVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionCountVerifier.class);
+
+    private final ClientRepository clientRepository;
+    private final ShardRouter shardRouter;
+    private final boolean verifyOnStartup;
+
+    /**
+     * Constructor for TransactionCountVerifier.
+     *
+     * @param clientRepository The repository to handle client related database operations.
+     * @param shardRouter      The router running the check on each shard.
+     * @param verifyOnStartup  Whether the counts are verified when the application is ready.
+     */
+    public TransactionCountVerifier(ClientRepository clientRepository, ShardRouter shardRouter,
+                                    @Value("${cagnotte.transaction.verify-counts-on-startup:false}") boolean verifyOnStartup) {
+        this.clientRepository = clientRepository;
+        this.shardRouter = shardRouter;
+        this.verifyOnStartup = verifyOnStartup;
+    }
+
+    /**
+     * Verifies the counts when the application is ready, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (verifyOnStartup) {
+            verify();
+        }
+    }
+
+    /**
+     * Verifies the transaction count of every client, on every shard, and logs a warning for each inconsistent one.
+     *
+     * @return The ids of the clients whose transaction count is inconsistent.
+     */
+    public List<Integer> verify() {
+        List<Integer> inconsistent = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            inconsistent.addAll(shardRouter.onShard(shard, clientRepository::findIdsWithInconsistentTransactionCount));
+        }
+        if (inconsistent.isEmpty()) {
+            log.info("Transaction counts are consistent");
+        } else {
+            log.warn("Transaction count inconsistent for {} clients: {}", inconsistent.size(), inconsistent);
+        }
+        return inconsistent;
+    }
+}
@@ -0,0 +1,113 @@
+package bforbank.cagnotte.controller;
+
+import bforbank.cagnotte.entities.ApiError;
+import bforbank.cagnotte.exception.CagnotteException;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the exceptions of the controllers to error responses and counts them.
+ * The errors of the services are stackless CagnotteExceptions, mapped by type to an HTTP status.
+ * The controllers catch them and call handle directly instead of letting them propagate: Spring MVC invokes
+ * the controllers by reflection and wraps any exception they throw in an InvocationTargetException,
+ * whose stack trace would cost more than the rest of the error path.
+ * Each error increments the cagnotte.errors counter, tagged with the class of the exception and the HTTP status.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    // The delay, in seconds, after which a client may retry a request rejected with 503 (Service Unavailable)
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final MeterRegistry meterRegistry;
+    // Counters by exception class; each class is handled by a single handler, so it always maps to the same status
+    private final Map<Class<?>, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for ApiExceptionHandler.
+     *
+     * @param meterRegistry The registry of the cagnotte.errors counter.
+     */
+    public ApiExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Handles the errors of the services: 400 (Bad Request) for an InvalidRequestException, 404 (Not Found) for a
+     * NotFoundException, 409 (Conflict) for a ConflictException and 503 (Service Unavailable) for a ServiceUnavailableException.
+     * The controllers also call it directly with the errors they catch, see the class documentation.
+     *
+     * @param e The exception thrown by the service.
+     * @return A ResponseEntity with the HTTP status of the exception and an ApiError.
+     */
+    @ExceptionHandler(CagnotteException.class)
+    public ResponseEntity<ApiError> handle(CagnotteException e) {
+        HttpStatus status = switch (e) {
+            case InvalidRequestException invalid -> HttpStatus.BAD_REQUEST;
+            case NotFoundException notFound -> HttpStatus.NOT_FOUND;
+            case ConflictException conflict -> HttpStatus.CONFLICT;
+            case ServiceUnavailableException unavailable -> HttpStatus.SERVICE_UNAVAILABLE;
+        };
+        ResponseEntity<ApiError> response = of(e, e.getMessage(), status);
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS).body(response.getBody());
+        }
+        return response;
+    }
+
+    /**
+     * Handles the other illegal arguments, such as a malformed content type.
+     *
+     * @param e The exception thrown by the controller.
+     * @return A ResponseEntity with HTTP status 400 (Bad Request) and an ApiError.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiError> handleIllegalArgument(IllegalArgumentException e) {
+        return of(e, e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles missing request parameters.
+     *
+     * @param e The exception thrown by Spring MVC.
+     * @return A ResponseEntity with HTTP status 400 (Bad Request) and an ApiError.
+     */
+    @ExceptionHandler(MissingServletRequestParameterException.class)
+    public ResponseEntity<ApiError> handleMissingParameter(MissingServletRequestParameterException e) {
+        return of(e, "Parameter " + e.getParameterName() + " is missing", HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles request parameters that cannot be converted, such as an amount with more than two decimals.
+     * The message of the CagnotteException thrown by the conversion, if any, is returned.
+     *
+     * @param e The exception thrown by Spring MVC.
+     * @return A ResponseEntity with HTTP status 400 (Bad Request) and an ApiError.
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ApiError> handleTypeMismatch(MethodArgumentTypeMismatchException e) {
+        Throwable cause = e.getMostSpecificCause();
+        String message = cause instanceof CagnotteException ? cause.getMessage() : "Parameter " + e.getName() + " is invalid";
+        return of(e, message, HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<ApiError> of(Exception e, String message, HttpStatus status) {
+        errorCounters.computeIfAbsent(e.getClass(), exceptionClass -> meterRegistry.counter("cagnotte.errors",
+                "exception", exceptionClass.getSimpleName(), "status", String.valueOf(status.value()))).increment();
+        return new ResponseEntity<>(new ApiError(message), status);
+    }
+}
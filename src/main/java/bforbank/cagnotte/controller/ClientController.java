@@ -1,50 +1,65 @@
 package bforbank.cagnotte.controller;
 
 import bforbank.cagnotte.entities.Client;
-import bforbank.cagnotte.entities.ApiError;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.CagnotteException;
 import bforbank.cagnotte.service.ClientService;
+import bforbank.cagnotte.service.ReplicaRouter;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * Controller for handling client related requests.
+ * Errors are mapped to their response by the ApiExceptionHandler.
  */
 @RestController
+@Timed(value = "cagnotte.controller", histogram = true)
 @RequestMapping("/client")
 public class ClientController {
 
     private final ClientService clientService;
+    private final ReplicaRouter replicaRouter;
+    private final ApiExceptionHandler exceptionHandler;
 
     /**
      * Constructor for ClientController.
      *
      * @param clientService The service to handle client related operations.
+     * @param replicaRouter The service creating the consistency tokens of the writes.
+     * @param exceptionHandler The handler building the error responses.
      */
-    public ClientController(ClientService clientService) {
+    public ClientController(ClientService clientService, ReplicaRouter replicaRouter, ApiExceptionHandler exceptionHandler) {
         this.clientService = clientService;
+        this.replicaRouter = replicaRouter;
+        this.exceptionHandler = exceptionHandler;
     }
 
     /**
      * Handles the POST request to create a new client.
      *
      * @param name     The name of the client to be created. It cannot be null.
-     * @param cagnotte The initial amount in the client's cagnotte. If not provided, it defaults to 0.0f.
+     * @param cagnotte The initial amount in the client's cagnotte. If not provided, it defaults to 0. At most two decimals.
      * @return A ResponseEntity containing the created Client object and HTTP status.
-     *         Returns HTTP status 201 (Created) if the client is successfully created.
+     *         Returns HTTP status 201 (Created) if the client is successfully created, with a Consistency-Token header
+     *         to send with the next reads.
      *         Returns HTTP status 400 (Bad Request) with an ApiError object if the name is null or blank.
      *         Returns HTTP status 409 (Conflict) with an ApiError object if a client with the same name already exists.
      *
      */
     @PostMapping("/createClient")
-    public ResponseEntity<?> createClient(@RequestParam String name, @RequestParam(required = false) Float cagnotte) {
+    public ResponseEntity<?> createClient(@RequestParam String name, @RequestParam(required = false) Money cagnotte) {
         try {
             Client savedClient = clientService.createClient(name, cagnotte);
-            return new ResponseEntity<>(savedClient, HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.BAD_REQUEST);
-        } catch (RuntimeException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.CONFLICT);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .headers(replicaRouter::addWriteToken)
+                    .body(savedClient);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
         }
     }
 
@@ -61,13 +76,28 @@ public class ClientController {
     @GetMapping("/getClient")
     public ResponseEntity<?> getClient(@RequestParam(required = false) Integer id, @RequestParam(required = false) String name) {
         try {
-
             Client client = clientService.getClientByIdOrName(id, name);
             return new ResponseEntity<>(client, HttpStatus.OK);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.BAD_REQUEST);
-        } catch (RuntimeException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.NOT_FOUND);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
+        }
+    }
+
+    /**
+     * Handles the POST request to retrieve several clients, in a constant number of queries.
+     *
+     * @param request The ids and names of the clients to be retrieved.
+     * @return A ResponseEntity containing the list of Client objects found and HTTP status.
+     *         Returns HTTP status 200 (OK) with the clients found; unknown ids and names are left out.
+     *         Returns HTTP status 400 (Bad Request) with an ApiError object if the request has too many ids and names.
+     */
+    @PostMapping("/batchGet")
+    public ResponseEntity<?> batchGet(@RequestBody ClientBatchRequest request) {
+        try {
+            List<Client> clients = clientService.getClients(request);
+            return new ResponseEntity<>(clients, HttpStatus.OK);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
         }
     }
 }
\ No newline at end of file
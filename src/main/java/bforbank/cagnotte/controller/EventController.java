@@ -0,0 +1,95 @@
+package bforbank.cagnotte.controller;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+import bforbank.cagnotte.exception.CagnotteException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.service.OutboxRelay;
+import bforbank.cagnotte.service.QueueOutboxSink;
+import bforbank.cagnotte.service.SseOutboxSink;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * REST controller exposing the change events published by the outbox relay.
+ * Errors are mapped to their response by the ApiExceptionHandler.
+ */
+@RestController
+@Timed(value = "cagnotte.controller", histogram = true)
+@RequestMapping("/events")
+public class EventController {
+
+    private final OutboxRelay outboxRelay;
+    private final QueueOutboxSink queueSink;
+    private final SseOutboxSink sseSink;
+    private final ApiExceptionHandler exceptionHandler;
+
+    /**
+     * Constructor for EventController.
+     *
+     * @param outboxRelay The relay, telling which sink the events are published to.
+     * @param queueSink The sink keeping the events in an in-process queue.
+     * @param sseSink The sink pushing the events to Server-Sent Events subscribers.
+     * @param exceptionHandler The handler building the error responses.
+     */
+    public EventController(OutboxRelay outboxRelay, QueueOutboxSink queueSink, SseOutboxSink sseSink,
+                           ApiExceptionHandler exceptionHandler) {
+        this.outboxRelay = outboxRelay;
+        this.queueSink = queueSink;
+        this.sseSink = sseSink;
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Endpoint for reading the change events following an offset, from the queue sink.
+     *
+     * @param after The offset of the last event processed. If not provided, the oldest retained events are returned.
+     * @param limit The maximum number of events to return.
+     * @return A ResponseEntity containing the list of ChangeEvent objects or an ApiError.
+     *      Returns HTTP status 200 (OK) with the events, in offset order; the offset of the last one is the next after.
+     *      Returns HTTP status 400 (Bad Request) with an ApiError object if the limit is not positive.
+     *      Returns HTTP status 404 (Not Found) with an ApiError object if the events are not published to the queue sink.
+     */
+    @GetMapping
+    public ResponseEntity<?> getEvents(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) {
+        try {
+            if (!outboxRelay.publishesTo(queueSink.getName())) {
+                throw NotFoundException.EVENT_SINK_DISABLED;
+            }
+            if (limit <= 0) {
+                throw InvalidRequestException.LIMIT_NOT_POSITIVE;
+            }
+            List<ChangeEvent> events = queueSink.poll(after, limit, Duration.ZERO);
+            return ResponseEntity.ok(events);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Endpoint for subscribing to the change events as Server-Sent Events, from the sse sink.
+     * Each event is named transaction and has its offset as id.
+     *
+     * @param lastEventId The Last-Event-ID header, sent by a reconnecting client with the offset of the last event received.
+     * @param after The offset to start after, when the header is absent. Without either, only new events are sent.
+     * @return The event stream: the events retained after the offset, then the new events as they are published.
+     * @throws NotFoundException if the events are not published to the sse sink. It is mapped to HTTP status 404
+     *      (Not Found) by the ApiExceptionHandler, since the stream cannot be replaced by an error response.
+     */
+    @GetMapping("/stream")
+    public SseEmitter streamEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                   @RequestParam(required = false) Long after) {
+        if (!outboxRelay.publishesTo(sseSink.getName())) {
+            throw NotFoundException.EVENT_SINK_DISABLED;
+        }
+        return sseSink.subscribe(lastEventId != null ? lastEventId : after);
+    }
+}
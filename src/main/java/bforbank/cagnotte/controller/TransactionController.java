@@ -1,49 +1,145 @@
 package bforbank.cagnotte.controller;
 
 import bforbank.cagnotte.entities.ApiError;
+import bforbank.cagnotte.entities.BulkImportResult;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.Money;
 import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionPage;
+import bforbank.cagnotte.entities.TransactionStatistics;
+import bforbank.cagnotte.exception.CagnotteException;
+import bforbank.cagnotte.service.AsyncTransactionService;
+import bforbank.cagnotte.service.BalanceNotifier;
+import bforbank.cagnotte.service.ReplicaRouter;
+import bforbank.cagnotte.service.TransactionImportService;
 import bforbank.cagnotte.service.TransactionService;
+import bforbank.cagnotte.service.TransactionStatisticsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * REST controller for handling transaction related requests.
+ * Errors are mapped to their response by the ApiExceptionHandler.
  */
 @RestController
+@Timed(value = "cagnotte.controller", histogram = true)
 @RequestMapping("/transaction")
 public class TransactionController {
 
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
     private final TransactionService transactionService;
+    private final TransactionImportService transactionImportService;
+    private final AsyncTransactionService asyncTransactionService;
+    private final TransactionStatisticsService statisticsService;
+    private final BalanceNotifier balanceNotifier;
+    private final ReplicaRouter replicaRouter;
+    private final ObjectMapper objectMapper;
+    private final ApiExceptionHandler exceptionHandler;
 
     /**
      * Constructor for TransactionController.
      *
      * @param transactionService The service to handle transaction related operations.
+     * @param transactionImportService The service to handle bulk transaction imports.
+     * @param asyncTransactionService The service making transactions asynchronously.
+     * @param statisticsService The service computing the statistics of transactions.
+     * @param balanceNotifier The service pushing the balance and availability changes to their subscribers.
+     * @param replicaRouter The service creating the consistency tokens of the writes.
+     * @param objectMapper The mapper used to write streamed transactions.
+     * @param exceptionHandler The handler building the error responses.
      */
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, TransactionImportService transactionImportService,
+                                 AsyncTransactionService asyncTransactionService, TransactionStatisticsService statisticsService,
+                                 BalanceNotifier balanceNotifier, ReplicaRouter replicaRouter, ObjectMapper objectMapper, ApiExceptionHandler exceptionHandler) {
         this.transactionService = transactionService;
+        this.transactionImportService = transactionImportService;
+        this.asyncTransactionService = asyncTransactionService;
+        this.statisticsService = statisticsService;
+        this.balanceNotifier = balanceNotifier;
+        this.replicaRouter = replicaRouter;
+        this.objectMapper = objectMapper;
+        this.exceptionHandler = exceptionHandler;
     }
 
     /**
      * Endpoint for making a transaction.
+     * A request retried with the same Idempotency-Key header gets the response of the first one,
+     * and the transaction is made only once.
      *
      * @param clientid The id of the client making the transaction. It connot be null.
-     * @param amount The amount of the transaction.
+     * @param amount The amount of the transaction, with at most two decimals.
+     * @param idempotencyKey The optional Idempotency-Key header, identifying the transaction across retries.
      * @return A ResponseEntity containing the created Transaction object or an ApiError.
-     *        Returns HTTP status 201 (Created) if the transaction is successfully created.
-     *        Returns HTTP status 400 (Bad Request) with an ApiError object if the amount is null.
+     *        Returns HTTP status 201 (Created) if the transaction is successfully created, or was created by a previous
+     *        request with the same idempotency key, with a Consistency-Token header to send with the next reads.
+     *        Returns HTTP status 400 (Bad Request) with an ApiError object if the amount is null or the idempotency key is invalid.
      *        Returns HTTP status 404 (Not Found) with an ApiError object if a client with the provided id is not found.
+     *        Returns HTTP status 409 (Conflict) with an ApiError object if the idempotency key was used by the client
+     *        for a transaction with a different amount. Keys are scoped to the client.
      */
     @PostMapping("/makeTransaction")
-    public ResponseEntity<?> makeTransaction(@RequestParam Integer clientid, @RequestParam Float amount) {
+    public ResponseEntity<?> makeTransaction(@RequestParam Integer clientid, @RequestParam Money amount,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        try {
+            Transaction transaction = transactionService.makeTransaction(clientid, amount, idempotencyKey);
+            return created(transaction);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
+        }
+    }
+
+    /**
+     * Asynchronous endpoint for making a transaction.
+     * The transaction is made on a dedicated bounded executor and the request thread is released until it completes,
+     * so a slow database does not exhaust the request threads.
+     *
+     * @param clientid The id of the client making the transaction. It connot be null.
+     * @param amount The amount of the transaction, with at most two decimals.
+     * @return A future of a ResponseEntity containing the created Transaction object or an ApiError.
+     *        Returns HTTP status 201 (Created) if the transaction is successfully created, with a Consistency-Token header
+     *        to send with the next reads.
+     *        Returns HTTP status 400 (Bad Request) with an ApiError object if the amount is null.
+     *        Returns HTTP status 404 (Not Found) with an ApiError object if a client with the provided id is not found.
+     *        Returns HTTP status 503 (Service Unavailable) with an ApiError object and a Retry-After header if too many
+     *        transactions are pending, or if the transaction is not completed in time (it may still be made).
+     */
+    @PostMapping("/makeTransactionAsync")
+    public CompletableFuture<ResponseEntity<?>> makeTransactionAsync(@RequestParam Integer clientid, @RequestParam Money amount) {
         try {
-            Transaction transaction = transactionService.makeTransaction(clientid, amount);
-            return new ResponseEntity<>(transaction, HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.BAD_REQUEST);
-        } catch (RuntimeException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.NOT_FOUND);
+            return asyncTransactionService.makeTransaction(clientid, amount)
+                    .<ResponseEntity<?>>thenApply(this::created)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        if (cause instanceof CagnotteException cagnotteException) {
+                            return exceptionHandler.handle(cagnotteException);
+                        }
+                        throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                    });
+        } catch (CagnotteException e) {
+            return CompletableFuture.completedFuture(exceptionHandler.handle(e));
         }
     }
 
@@ -61,12 +157,110 @@ public class TransactionController {
         try {
             Iterable<Transaction> transactions = transactionService.getTransactions(clientid);
             return ResponseEntity.ok(transactions);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.BAD_REQUEST);
-        } catch (RuntimeException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.NOT_FOUND);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
         }
+    }
 
+    /**
+     * Endpoint for retrieving a page of transactions for a client.
+     * It is selected instead of the unpaginated endpoint when the limit parameter is present.
+     *
+     * @param clientid The id of the client whose transactions are to be retrieved. It connot be null.
+     * @param limit The maximum number of transactions in the page.
+     * @param after The cursor returned as next by the previous page. If not provided, the first page is returned.
+     * @return A ResponseEntity containing a TransactionPage object or an ApiError.
+     *       Returns HTTP status 200 (OK) with the transactions and the cursor of the next page (null on the last page).
+     *       Returns HTTP status 404 (Not Found) with an ApiError object if a client with the provided id is not found.
+     *       Returns HTTP status 400 (Bad Request) with an ApiError object if the clientid is null or the limit is not positive.
+     */
+    @GetMapping(value = "/getTransactions", params = "limit")
+    public ResponseEntity<?> getTransactionsPage(@RequestParam Integer clientid, @RequestParam int limit,
+                                                 @RequestParam(required = false) Integer after) {
+        try {
+            TransactionPage page = transactionService.getTransactions(clientid, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
+        }
+    }
+
+    /**
+     * Endpoint for streaming all transactions for a client.
+     * The JSON array is written incrementally while the transactions are read from the database,
+     * so memory use does not depend on the size of the client's history.
+     * The body is written on another thread, which gets the consistency token of the request.
+     *
+     * @param clientid The id of the client whose transactions are to be retrieved. It connot be null.
+     * @return A ResponseEntity streaming a JSON array of Transaction objects, with HTTP status 200 (OK).
+     *       The body type must be StreamingResponseBody for Spring to stream it, instead of serializing it.
+     * @throws CagnotteException if the clientid is null or a client with the provided id is not found. It is mapped
+     *       to HTTP status 400 (Bad Request) or 404 (Not Found), with an ApiError object, by the ApiExceptionHandler.
+     */
+    @GetMapping("/streamTransactions")
+    public ResponseEntity<StreamingResponseBody> streamTransactions(@RequestParam Integer clientid) {
+        transactionService.checkClientExists(clientid);
+        Consumer<Consumer<Transaction>> stream =
+                replicaRouter.withCurrentToken(consumer -> transactionService.streamTransactions(clientid, consumer));
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                stream.accept(transaction -> {
+                    try {
+                        generator.writeObject(transaction);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Endpoint for retrieving the statistics of all the transactions of a client, or of all clients.
+     * They are computed by the database, without loading the transactions.
+     *
+     * @param clientid The id of the client, or null for the transactions of all clients.
+     * @return A ResponseEntity containing a TransactionStatistics object or an ApiError.
+     *       Returns HTTP status 200 (OK) with the count, sum, min, max and average of the amounts.
+     *       Returns HTTP status 404 (Not Found) with an ApiError object if a client with the provided id is not found.
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<?> getStatistics(@RequestParam(required = false) Integer clientid) {
+        try {
+            TransactionStatistics statistics = statisticsService.getStatistics(clientid);
+            return ResponseEntity.ok(statistics);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
+        }
+    }
+
+    /**
+     * Endpoint for retrieving the statistics of the transactions of a client, or of all clients, per day or per month (UTC).
+     *
+     * @param clientid The id of the client, or null for the transactions of all clients.
+     * @param period The period of the buckets, day or month.
+     * @param from The first day of the range (ISO date). If not provided, the range covers 30 days or 12 months.
+     * @param to The last day of the range (ISO date). If not provided, today.
+     * @return A ResponseEntity containing a list of TransactionStatistics objects or an ApiError.
+     *       Returns HTTP status 200 (OK) with the statistics of each non-empty day or month, ordered by start.
+     *       Returns HTTP status 400 (Bad Request) with an ApiError object if the period or the range is invalid.
+     *       Returns HTTP status 404 (Not Found) with an ApiError object if a client with the provided id is not found.
+     */
+    @GetMapping("/statistics/buckets")
+    public ResponseEntity<?> getStatisticsBuckets(@RequestParam(required = false) Integer clientid,
+                                                  @RequestParam(defaultValue = "day") String period,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            List<TransactionStatistics> statistics = statisticsService.getStatistics(clientid,
+                    TransactionStatisticsService.Period.parse(period), from, to);
+            return ResponseEntity.ok(statistics);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
+        }
     }
 
     /**
@@ -83,12 +277,80 @@ public class TransactionController {
         try {
             boolean isAvailable = transactionService.isCagnotteAvailable(clientid);
             return ResponseEntity.ok(isAvailable);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
         }
-        catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Server-Sent Events endpoint pushing the balance of a client's cagnotte and the changes of its availability,
+     * instead of polling isCagnotteAvailable. The current balance and availability are sent on subscription,
+     * then a balance event is sent when the balance changes and an availability event when the availability changes.
+     * Both events carry the client id, the cagnotte and the availability.
+     * Only the transactions made through this instance of the application are pushed.
+     *
+     * @param clientid The id of the client to follow. It connot be null.
+     * @return The event stream of the client.
+     * @throws CagnotteException if the clientid is null or a client with the provided id is not found. It is mapped
+     *      to HTTP status 400 (Bad Request) or 404 (Not Found) by the ApiExceptionHandler, since the stream cannot be
+     *      replaced by an error response.
+     */
+    @GetMapping(value = "/streamAvailability", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@RequestParam Integer clientid) {
+        return balanceNotifier.subscribe(clientid);
+    }
+
+    /**
+     * Endpoint for checking if the cagnottes of several clients are available, in a constant number of queries.
+     *
+     * @param request The ids and names of the clients to check.
+     * @return A ResponseEntity containing the availability of the cagnotte of each client found, by client id, or an ApiError.
+     *      Returns HTTP status 200 (OK) with the clients found; unknown ids and names are left out.
+     *      Returns HTTP status 400 (Bad Request) with an ApiError object if the request has too many ids and names.
+     */
+    @PostMapping("/batchAvailability")
+    public ResponseEntity<?> batchAvailability(@RequestBody ClientBatchRequest request) {
+        try {
+            Map<Integer, Boolean> availability = transactionService.getCagnottesAvailability(request);
+            return ResponseEntity.ok(availability);
+        } catch (CagnotteException e) {
+            return exceptionHandler.handle(e);
         }
-        catch (RuntimeException e) {
-            return new ResponseEntity<>(new ApiError(e.getMessage()),HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Endpoint for importing transactions in bulk.
+     * The body is streamed line by line, so its size is not limited by memory.
+     * Each line is validated like a call to makeTransaction, and valid lines are written in chunks.
+     *
+     * @param contentType The content type of the body: application/x-ndjson (one JSON object with clientid and amount per line)
+     *                    or text/csv (one "clientid,amount" pair per line, with an optional header line).
+     * @param body The body of the request.
+     * @return A ResponseEntity containing a BulkImportResult or an ApiError.
+     *      Returns HTTP status 200 (OK) with the number of accepted and rejected lines and the errors of the rejected lines,
+     *      and a Consistency-Token header to send with the next reads.
+     *      Returns HTTP status 415 (Unsupported Media Type) with an ApiError object if the content type is not supported.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkImport(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) throws IOException {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        TransactionImportService.Format format;
+        if (MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(mediaType)) {
+            format = TransactionImportService.Format.NDJSON;
+        } else if (TEXT_CSV.equalsTypeAndSubtype(mediaType)) {
+            format = TransactionImportService.Format.CSV;
+        } else {
+            return new ResponseEntity<>(new ApiError("Content type must be application/x-ndjson or text/csv"), HttpStatus.UNSUPPORTED_MEDIA_TYPE);
         }
+        Reader reader = new InputStreamReader(body, mediaType.getCharset() != null ? mediaType.getCharset() : StandardCharsets.UTF_8);
+        BulkImportResult result = transactionImportService.importTransactions(reader, format);
+        return ResponseEntity.ok().headers(replicaRouter::addWriteToken).body(result);
+    }
+
+    private ResponseEntity<?> created(Transaction transaction) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .headers(replicaRouter::addWriteToken)
+                .body(transaction);
     }
 }
\ No newline at end of file
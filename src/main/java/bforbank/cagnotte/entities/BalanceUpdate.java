@@ -0,0 +1,57 @@
+package bforbank.cagnotte.entities;
+
+/**
+ * Entity class representing the balance of a client, as pushed to the subscribers of its balance stream.
+ */
+public class BalanceUpdate {
+    // Identifier of the client
+    private final Integer clientId;
+
+    // Amount in the client's cagnotte
+    private final Money cagnotte;
+
+    // Whether the cagnotte is available: at least 3 transactions and a cagnotte of at least 10
+    private final boolean available;
+
+    /**
+     * Constructor for BalanceUpdate.
+     *
+     * @param clientId  The id of the client.
+     * @param cagnotte  The amount in the client's cagnotte.
+     * @param available Whether the cagnotte is available.
+     */
+    public BalanceUpdate(Integer clientId, Money cagnotte, boolean available) {
+        this.clientId = clientId;
+        this.cagnotte = cagnotte;
+        this.available = available;
+    }
+
+    // Getter methods
+
+    /**
+     * Gets the identifier of the client.
+     *
+     * @return The identifier of the client.
+     */
+    public Integer getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Gets the amount in the client's cagnotte.
+     *
+     * @return The amount in the cagnotte.
+     */
+    public Money getCagnotte() {
+        return cagnotte;
+    }
+
+    /**
+     * Indicates whether the cagnotte is available.
+     *
+     * @return true if the client has made at least 3 transactions and their cagnotte is at least 10, false otherwise.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,111 @@
+package bforbank.cagnotte.entities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entity class representing the result of a bulk transaction import.
+ * Accepted lines are only counted; rejected lines are reported individually, up to a configured limit.
+ */
+public class BulkImportResult {
+    // Number of lines whose transaction has been written
+    private long accepted;
+
+    // Number of lines that have been rejected
+    private long rejected;
+
+    // The rejected lines and the reason they were rejected
+    private final List<LineError> errors = new ArrayList<>();
+
+    // Getter methods
+
+    /**
+     * Gets the number of lines whose transaction has been written.
+     *
+     * @return The number of accepted lines.
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Gets the number of lines that have been rejected.
+     *
+     * @return The number of rejected lines.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the rejected lines and the reason they were rejected.
+     *
+     * @return The reported line errors.
+     */
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Records accepted lines.
+     *
+     * @param count The number of lines accepted.
+     */
+    public void accept(int count) {
+        accepted += count;
+    }
+
+    /**
+     * Records a rejected line.
+     *
+     * @param line      The number of the rejected line, starting at 1.
+     * @param error     The reason the line was rejected.
+     * @param maxErrors The maximum number of line errors to report.
+     */
+    public void reject(long line, String error, int maxErrors) {
+        rejected++;
+        if (errors.size() < maxErrors) {
+            errors.add(new LineError(line, error));
+        }
+    }
+
+    /**
+     * Class representing a rejected line of a bulk import.
+     */
+    public static class LineError {
+        // The number of the rejected line, starting at 1
+        private final long line;
+
+        // The reason the line was rejected
+        private final String error;
+
+        /**
+         * Constructor for LineError.
+         *
+         * @param line  The number of the rejected line.
+         * @param error The reason the line was rejected.
+         */
+        public LineError(long line, String error) {
+            this.line = line;
+            this.error = error;
+        }
+
+        /**
+         * Gets the number of the rejected line.
+         *
+         * @return The number of the rejected line, starting at 1.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Gets the reason the line was rejected.
+         *
+         * @return The error message.
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
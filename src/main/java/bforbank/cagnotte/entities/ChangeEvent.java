@@ -0,0 +1,87 @@
+package bforbank.cagnotte.entities;
+
+import java.time.Instant;
+
+/**
+ * Entity class representing a change event published by the outbox relay: a transaction that was committed.
+ * Events are numbered by offset, in publication order, so a consumer resumes from the last offset it processed.
+ * Delivery is at least once: after a crash, an event may be published again under a new offset,
+ * so consumers deduplicate on the transaction id.
+ */
+public class ChangeEvent {
+    // Position of the event in the stream, increasing in publication order, with possible gaps
+    private final long offset;
+
+    // Identifier of the transaction
+    private final Integer transactionId;
+
+    // Identifier of the client of the transaction
+    private final Integer clientId;
+
+    // Amount of the transaction
+    private final Money amount;
+
+    // Time at which the transaction was written
+    private final Instant createdAt;
+
+    /**
+     * Constructor for ChangeEvent.
+     *
+     * @param offset The offset of the event.
+     * @param entry  The outbox entry of the transaction.
+     */
+    public ChangeEvent(long offset, OutboxEvent entry) {
+        this.offset = offset;
+        this.transactionId = entry.getTransactionId();
+        this.clientId = entry.getClientId();
+        this.amount = entry.getAmount();
+        this.createdAt = entry.getCreatedAt();
+    }
+
+    // Getter methods
+
+    /**
+     * Gets the offset of the event.
+     *
+     * @return The position of the event in the stream.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the identifier of the transaction.
+     *
+     * @return The identifier of the transaction.
+     */
+    public Integer getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Gets the identifier of the client of the transaction.
+     *
+     * @return The identifier of the client.
+     */
+    public Integer getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Gets the amount of the transaction.
+     *
+     * @return The amount of the transaction.
+     */
+    public Money getAmount() {
+        return amount;
+    }
+
+    /**
+     * Gets the time at which the transaction was written.
+     *
+     * @return The creation time of the transaction.
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -1,23 +1,37 @@
 package bforbank.cagnotte.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 /**
  * Entity class representing a client in the system.
+ * Client names are unique, which also gives findByName a unique index to look up.
  */
 @Entity
+@Table(name = "client", uniqueConstraints = @UniqueConstraint(name = "uk_client_name", columnNames = "name"))
 public class Client {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "client_seq")
+    @GenericGenerator(name = "client_seq", type = ShardSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "client_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = ShardSequenceGenerator.INCREMENT_SIZE)})
     // Unique identifier for the client
     private Integer id;
 
     // Name of the client
     private String name;
 
-    // Amount in the client's cagnotte
-    private Float cagnotte;
+    // Amount in the client's cagnotte, stored in cents
+    @Column(name = "cagnotte_cents")
+    private Money cagnotte;
+
+    // Number of transactions made by the client, kept up to date with each transaction
+    @JsonIgnore
+    private Integer transactionCount = 0;
 
     // Getter and setter methods
 
@@ -62,7 +76,7 @@ public class Client {
      *
      * @return The amount in the client's cagnotte.
      */
-    public Float getCagnotte() {
+    public Money getCagnotte() {
         return cagnotte;
     }
 
@@ -71,7 +85,25 @@ public class Client {
      *
      * @param cagnotte The amount to set in the client's cagnotte.
      */
-    public void setCagnotte(Float cagnotte) {
+    public void setCagnotte(Money cagnotte) {
         this.cagnotte = cagnotte;
     }
+
+    /**
+     * Gets the number of transactions made by the client.
+     *
+     * @return The number of transactions made by the client.
+     */
+    public Integer getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Sets the number of transactions made by the client.
+     *
+     * @param transactionCount The number of transactions to set.
+     */
+    public void setTransactionCount(Integer transactionCount) {
+        this.transactionCount = transactionCount;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package bforbank.cagnotte.entities;
+
+import java.util.List;
+
+/**
+ * Entity class representing the body of a batch request on clients: the ids and the names of the clients.
+ */
+public class ClientBatchRequest {
+    // The ids of the clients
+    private List<Integer> ids;
+
+    // The names of the clients
+    private List<String> names;
+
+    /**
+     * Default constructor for ClientBatchRequest, used to read it from JSON.
+     */
+    public ClientBatchRequest() {
+    }
+
+    /**
+     * Constructor for ClientBatchRequest.
+     *
+     * @param ids   The ids of the clients, or null.
+     * @param names The names of the clients, or null.
+     */
+    public ClientBatchRequest(List<Integer> ids, List<String> names) {
+        this.ids = ids;
+        this.names = names;
+    }
+
+    // Getter and setter methods
+
+    /**
+     * Gets the ids of the clients.
+     *
+     * @return The ids of the clients, or null.
+     */
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    /**
+     * Sets the ids of the clients.
+     *
+     * @param ids The ids to set.
+     */
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Gets the names of the clients.
+     *
+     * @return The names of the clients, or null.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Sets the names of the clients.
+     *
+     * @param names The names to set.
+     */
+    public void setNames(List<String> names) {
+        this.names = names;
+    }
+}
@@ -0,0 +1,61 @@
+package bforbank.cagnotte.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Entity class representing the progress of the draining of a transaction journal into the database.
+ * It is updated in the same database transaction as the transactions it covers,
+ * so a record of the journal is written exactly once, even when it is replayed after a crash.
+ * The outbox relay keeps the last offset it handed out in the checkpoint named outbox.
+ */
+@Entity
+@Table(name = "journal_checkpoint")
+public class JournalCheckpoint {
+
+    @Id
+    // Name of the journal, as configured
+    private String journal;
+
+    // Sequence of the last record of the journal written to the database
+    private Long sequence;
+
+    // Getter and setter methods
+
+    /**
+     * Gets the name of the journal.
+     *
+     * @return The name of the journal.
+     */
+    public String getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the name of the journal.
+     *
+     * @param journal The name to set.
+     */
+    public void setJournal(String journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the sequence of the last record of the journal written to the database.
+     *
+     * @return The sequence of the last written record, 0 if none.
+     */
+    public Long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the sequence of the last record of the journal written to the database.
+     *
+     * @param sequence The sequence to set.
+     */
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+}
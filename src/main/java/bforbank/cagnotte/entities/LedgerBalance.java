@@ -0,0 +1,29 @@
+package bforbank.cagnotte.entities;
+
+/**
+ * Projection of the balance of a client in the ledger mode:
+ * the client row plus the tail of the transactions not yet folded into it by a snapshot.
+ */
+public interface LedgerBalance {
+
+    /**
+     * Gets the id of the client.
+     *
+     * @return The id of the client.
+     */
+    Integer getId();
+
+    /**
+     * Gets the balance of the client.
+     *
+     * @return The balance of the client, in cents.
+     */
+    Long getBalance();
+
+    /**
+     * Gets the number of transactions of the client.
+     *
+     * @return The number of transactions of the client.
+     */
+    Long getTransactions();
+}
@@ -0,0 +1,152 @@
+package bforbank.cagnotte.entities;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.time.Instant;
+
+/**
+ * Entity class representing a balance snapshot of the ledger mode.
+ * Each snapshot records a compaction of a client's ledger tail: the transactions it folded into the client row
+ * reference it by id, and it keeps the balance and transaction count of the client right after the compaction.
+ */
+@Entity
+@Table(name = "ledger_snapshot", indexes = @Index(name = "ix_ledger_snapshot_client_id_id", columnList = "client_id, id"))
+public class LedgerSnapshot {
+
+    @Id
+    @GeneratedValue(generator = "ledger_snapshot_seq")
+    @GenericGenerator(name = "ledger_snapshot_seq", type = ShardSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "ledger_snapshot_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = ShardSequenceGenerator.INCREMENT_SIZE)})
+    // Unique identifier for the snapshot
+    private Integer id;
+
+    // Identifier of the client whose ledger tail was compacted
+    private Integer clientId;
+
+    // Balance of the client after the compaction, stored in cents
+    @Column(name = "balance_cents")
+    private Money balance;
+
+    // Number of transactions of the client after the compaction
+    private Integer transactionCount;
+
+    // Number of transactions folded into the client row by the compaction
+    private Integer compactedTransactions;
+
+    // Time of the compaction
+    private Instant createdAt;
+
+    // Getter and setter methods
+
+    /**
+     * Gets the unique identifier of the snapshot.
+     *
+     * @return The unique identifier of the snapshot.
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * Sets the unique identifier of the snapshot.
+     *
+     * @param id The unique identifier to set.
+     */
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the identifier of the client whose ledger tail was compacted.
+     *
+     * @return The identifier of the client.
+     */
+    public Integer getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Sets the identifier of the client whose ledger tail was compacted.
+     *
+     * @param clientId The client identifier to set.
+     */
+    public void setClientId(Integer clientId) {
+        this.clientId = clientId;
+    }
+
+    /**
+     * Gets the balance of the client after the compaction.
+     *
+     * @return The balance of the client.
+     */
+    public Money getBalance() {
+        return balance;
+    }
+
+    /**
+     * Sets the balance of the client after the compaction.
+     *
+     * @param balance The balance to set.
+     */
+    public void setBalance(Money balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * Gets the number of transactions of the client after the compaction.
+     *
+     * @return The number of transactions of the client.
+     */
+    public Integer getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Sets the number of transactions of the client after the compaction.
+     *
+     * @param transactionCount The number of transactions to set.
+     */
+    public void setTransactionCount(Integer transactionCount) {
+        this.transactionCount = transactionCount;
+    }
+
+    /**
+     * Gets the number of transactions folded into the client row by the compaction.
+     *
+     * @return The number of compacted transactions.
+     */
+    public Integer getCompactedTransactions() {
+        return compactedTransactions;
+    }
+
+    /**
+     * Sets the number of transactions folded into the client row by the compaction.
+     *
+     * @param compactedTransactions The number of compacted transactions to set.
+     */
+    public void setCompactedTransactions(Integer compactedTransactions) {
+        this.compactedTransactions = compactedTransactions;
+    }
+
+    /**
+     * Gets the time of the compaction.
+     *
+     * @return The time of the compaction.
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets the time of the compaction.
+     *
+     * @param createdAt The time to set.
+     */
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,124 @@
+package bforbank.cagnotte.entities;
+
+import bforbank.cagnotte.exception.InvalidRequestException;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Value class representing an exact amount of money, stored as a long count of cents.
+ * Unlike Float, adding amounts never drifts: the sum of any number of deposits is exact.
+ * It is written to JSON as a decimal number (e.g. 10.50) and read from request parameters and JSON as a decimal number
+ * with at most two decimals.
+ */
+public final class Money implements Comparable<Money> {
+
+    // The zero amount
+    public static final Money ZERO = new Money(0);
+
+    // The amount, in cents
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Creates an amount from a number of cents.
+     *
+     * @param cents The amount in cents.
+     * @return The amount.
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Creates an amount from a decimal number.
+     *
+     * @param amount The amount. It cannot have more than two decimals.
+     * @return The amount.
+     * @throws InvalidRequestException if the amount has more than two decimals or does not fit in a long count of cents.
+     */
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        BigDecimal cents;
+        try {
+            cents = amount.setScale(2, RoundingMode.UNNECESSARY).movePointRight(2);
+        } catch (ArithmeticException e) {
+            throw InvalidRequestException.AMOUNT_TOO_PRECISE;
+        }
+        try {
+            return ofCents(cents.longValueExact());
+        } catch (ArithmeticException e) {
+            throw InvalidRequestException.AMOUNT_OUT_OF_RANGE;
+        }
+    }
+
+    /**
+     * Parses an amount. Used to convert request parameters.
+     *
+     * @param amount The amount, as a decimal number with at most two decimals.
+     * @return The amount.
+     * @throws InvalidRequestException if the amount is not a number, has more than two decimals or is out of range.
+     */
+    public static Money valueOf(String amount) {
+        try {
+            return of(new BigDecimal(amount.trim()));
+        } catch (NumberFormatException e) {
+            throw InvalidRequestException.AMOUNT_NOT_A_NUMBER;
+        }
+    }
+
+    /**
+     * Gets the amount in cents.
+     *
+     * @return The amount in cents.
+     */
+    public long toCents() {
+        return cents;
+    }
+
+    /**
+     * Gets the amount as a decimal number with two decimals.
+     *
+     * @return The amount.
+     */
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Adds an amount to this amount.
+     *
+     * @param other The amount to add.
+     * @return The sum of both amounts.
+     * @throws ArithmeticException if the sum does not fit in a long count of cents.
+     */
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && cents == other.cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
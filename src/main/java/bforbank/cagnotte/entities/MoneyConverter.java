@@ -0,0 +1,21 @@
+package bforbank.cagnotte.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * JPA converter storing Money attributes as a BIGINT count of cents.
+ */
+@Converter(autoApply = true)
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.toCents();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long cents) {
+        return cents == null ? null : Money.ofCents(cents);
+    }
+}
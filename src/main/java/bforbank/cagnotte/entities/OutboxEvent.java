@@ -0,0 +1,104 @@
+package bforbank.cagnotte.entities;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.time.Instant;
+
+/**
+ * Entity class representing a transaction waiting in the outbox to be published as a change event.
+ * It is inserted in the same database transaction as the transaction it describes, so an event is published
+ * if and only if its transaction is committed. The outbox relay deletes it once published.
+ */
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(generator = "outbox_event_seq")
+    @GenericGenerator(name = "outbox_event_seq", type = ShardSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "outbox_event_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = ShardSequenceGenerator.INCREMENT_SIZE)})
+    // Unique identifier for the outbox entry
+    private Integer id;
+
+    // Identifier of the transaction
+    private Integer transactionId;
+
+    // Identifier of the client of the transaction
+    private Integer clientId;
+
+    // Amount of the transaction, stored in cents
+    @Column(name = "amount_cents")
+    private Money amount;
+
+    // Time at which the transaction was written
+    private Instant createdAt;
+
+    /**
+     * Default constructor for OutboxEvent.
+     */
+    public OutboxEvent() {
+    }
+
+    /**
+     * Constructor for OutboxEvent, describing a transaction.
+     *
+     * @param transaction The transaction, whose id is set.
+     */
+    public OutboxEvent(Transaction transaction) {
+        this.transactionId = transaction.getId();
+        this.clientId = transaction.getClientId();
+        this.amount = transaction.getAmount();
+        this.createdAt = transaction.getCreatedAt();
+    }
+
+    // Getter methods
+
+    /**
+     * Gets the unique identifier of the outbox entry.
+     *
+     * @return The unique identifier of the outbox entry.
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * Gets the identifier of the transaction.
+     *
+     * @return The identifier of the transaction.
+     */
+    public Integer getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Gets the identifier of the client of the transaction.
+     *
+     * @return The identifier of the client.
+     */
+    public Integer getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Gets the amount of the transaction.
+     *
+     * @return The amount of the transaction.
+     */
+    public Money getAmount() {
+        return amount;
+    }
+
+    /**
+     * Gets the time at which the transaction was written.
+     *
+     * @return The creation time of the transaction.
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,50 @@
+package bforbank.cagnotte.entities;
+
+import bforbank.cagnotte.config.ShardContext;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sequence id generator allocating ids on the shard of the current transaction.
+ * Each shard has its own sequence, read in pooled blocks like a standard sequence generator, but with one block per shard.
+ * The value v of the sequence of shard s becomes the id v * shardCount + s, so ids are unique across shards
+ * and the shard of a row is its id modulo the number of shards.
+ * Without sharding, the number of shards is 1 and the ids are the values of the sequence.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+
+    // Hibernate setting holding the number of shards, set when sharding is enabled
+    public static final String SHARD_COUNT = "cagnotte.shard_count";
+
+    // Increment of the sequences of the entities, which is also the size of the blocks of ids read at once
+    public static final String INCREMENT_SIZE = "50";
+
+    private final ConcurrentMap<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+    private int shardCount;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, parameters, serviceRegistry);
+        shardCount = serviceRegistry.requireService(ConfigurationService.class).getSetting(SHARD_COUNT, StandardConverters.INTEGER, 1);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        int shard = ShardContext.getCurrentShard();
+        Optimizer optimizer = optimizers.computeIfAbsent(shard,
+                key -> new PooledOptimizer(getIdentifierType().getReturnedClass(), getOptimizer().getIncrementSize()));
+        Number value = (Number) optimizer.generate(getDatabaseStructure().buildCallback(session));
+        return Math.toIntExact(value.longValue() * shardCount + shard);
+    }
+}
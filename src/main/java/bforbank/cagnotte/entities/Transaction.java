@@ -1,23 +1,65 @@
 package bforbank.cagnotte.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.time.Instant;
 
 /**
  * Entity class representing a transaction in the system.
+ * The (client_id, id) index serves the lookups, counts and keyset pages of a client's transactions,
+ * the (client_id, snapshot_id) index serves the reads of the ledger tail of a client,
+ * the (client_id, created_at) and (created_at) indexes serve the statistics over a time range,
+ * and the unique (client_id, idempotency_key) constraint makes a retried transaction fail instead of being written twice.
+ * Idempotency keys are scoped to the client, so the constraint holds on the shard of the client when sharding is enabled.
  */
 @Entity
+@Table(name = "transaction", indexes = {
+        @Index(name = "ix_transaction_client_id_id", columnList = "client_id, id"),
+        @Index(name = "ix_transaction_client_id_snapshot_id", columnList = "client_id, snapshot_id"),
+        @Index(name = "ix_transaction_client_id_created_at", columnList = "client_id, created_at"),
+        @Index(name = "ix_transaction_created_at", columnList = "created_at")},
+        uniqueConstraints = @UniqueConstraint(name = "uk_transaction_client_id_idempotency_key",
+                columnNames = {"client_id", "idempotency_key"}))
 public class Transaction {
 
+    // Snapshot id of the transactions applied to the client row when they are written, outside of the ledger mode
+    public static final int APPLIED_ON_WRITE = 0;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "transaction_seq")
+    @GenericGenerator(name = "transaction_seq", type = ShardSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "transaction_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = ShardSequenceGenerator.INCREMENT_SIZE)})
     // Unique identifier for the transaction
     private Integer id;
 
     // Identifier of the client associated with the transaction
     private Integer clientId;
 
-    // Amount of the transaction
-    private Float amount;
+    // Amount of the transaction, stored in cents
+    @Column(name = "amount_cents")
+    private Money amount;
+
+    // Id of the ledger snapshot that folded the transaction into the client row, APPLIED_ON_WRITE if it was applied
+    // when written, or null while it is in the ledger tail. Rows written before the column existed default to APPLIED_ON_WRITE
+    @JsonIgnore
+    @Column(name = "snapshot_id")
+    @ColumnDefault("0")
+    private Integer snapshotId;
+
+    // Idempotency key given by the client with the transaction, unique per client, or null
+    @JsonIgnore
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    // Time at which the transaction was written, or null for the transactions written before the column existed
+    @JsonIgnore
+    private Instant createdAt;
 
     // Getter and setter methods
 
@@ -62,7 +104,7 @@ public class Transaction {
      *
      * @return The amount of the transaction.
      */
-    public Float getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
@@ -71,7 +113,61 @@ public class Transaction {
      *
      * @param amount The amount to set.
      */
-    public void setAmount(Float amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
+
+    /**
+     * Gets the id of the ledger snapshot that folded the transaction into the client row.
+     *
+     * @return The id of the snapshot, APPLIED_ON_WRITE if the transaction was applied when written, or null if it is in the ledger tail.
+     */
+    public Integer getSnapshotId() {
+        return snapshotId;
+    }
+
+    /**
+     * Sets the id of the ledger snapshot that folded the transaction into the client row.
+     *
+     * @param snapshotId The id of the snapshot to set.
+     */
+    public void setSnapshotId(Integer snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    /**
+     * Gets the idempotency key given by the client with the transaction.
+     *
+     * @return The idempotency key, or null if none was given.
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Sets the idempotency key given by the client with the transaction.
+     *
+     * @param idempotencyKey The idempotency key to set.
+     */
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Gets the time at which the transaction was written.
+     *
+     * @return The time at which the transaction was written, or null if unknown.
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets the time at which the transaction was written.
+     *
+     * @param createdAt The time to set.
+     */
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package bforbank.cagnotte.entities;
+
+/**
+ * Projection of the SQL aggregates of a set of transactions, in cents.
+ * The bucket is only set for the aggregates grouped by day or by month.
+ */
+public interface TransactionAggregate {
+
+    /**
+     * Gets the key of the bucket the transactions belong to.
+     *
+     * @return The bucket as a yyyyMMdd number for a day or a yyyyMM number for a month, or null if not grouped.
+     */
+    Integer getBucket();
+
+    /**
+     * Gets the number of transactions.
+     *
+     * @return The number of transactions.
+     */
+    Long getTransactions();
+
+    /**
+     * Gets the sum of the amounts of the transactions.
+     *
+     * @return The sum of the amounts, in cents, or null if there are no transactions.
+     */
+    Long getTotal();
+
+    /**
+     * Gets the smallest amount of the transactions.
+     *
+     * @return The smallest amount, in cents, or null if there are no transactions.
+     */
+    Long getMinimum();
+
+    /**
+     * Gets the largest amount of the transactions.
+     *
+     * @return The largest amount, in cents, or null if there are no transactions.
+     */
+    Long getMaximum();
+}
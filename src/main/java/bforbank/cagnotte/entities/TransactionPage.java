@@ -0,0 +1,45 @@
+package bforbank.cagnotte.entities;
+
+import java.util.List;
+
+/**
+ * Entity class representing a page of a client's transactions, ordered by id.
+ */
+public class TransactionPage {
+    // The transactions of the page
+    private final List<Transaction> transactions;
+
+    // The cursor to pass as the after parameter to get the next page, or null if this is the last page
+    private final Integer next;
+
+    /**
+     * Constructor for TransactionPage.
+     *
+     * @param transactions The transactions of the page.
+     * @param next         The cursor of the next page, or null if this is the last page.
+     */
+    public TransactionPage(List<Transaction> transactions, Integer next) {
+        this.transactions = transactions;
+        this.next = next;
+    }
+
+    // Getter methods
+
+    /**
+     * Gets the transactions of the page.
+     *
+     * @return The transactions of the page, ordered by id.
+     */
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Gets the cursor of the next page.
+     *
+     * @return The id to pass as the after parameter to get the next page, or null if this is the last page.
+     */
+    public Integer getNext() {
+        return next;
+    }
+}
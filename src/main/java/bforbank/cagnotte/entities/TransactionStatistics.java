@@ -0,0 +1,107 @@
+package bforbank.cagnotte.entities;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+/**
+ * Entity class representing the statistics of a set of transactions: all the transactions of a client or of all clients,
+ * or those of one day or one month.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionStatistics {
+    // The first day of the bucket, or null for the statistics of all the transactions
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private final LocalDate start;
+
+    // The number of transactions
+    private final long count;
+
+    // The sum of the amounts
+    private final Money sum;
+
+    // The smallest amount, or null if there are no transactions
+    private final Money min;
+
+    // The largest amount, or null if there are no transactions
+    private final Money max;
+
+    /**
+     * Constructor for TransactionStatistics.
+     *
+     * @param start The first day of the bucket, or null for the statistics of all the transactions.
+     * @param count The number of transactions.
+     * @param sum   The sum of the amounts.
+     * @param min   The smallest amount, or null if there are no transactions.
+     * @param max   The largest amount, or null if there are no transactions.
+     */
+    public TransactionStatistics(LocalDate start, long count, Money sum, Money min, Money max) {
+        this.start = start;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    // Getter methods
+
+    /**
+     * Gets the first day of the bucket.
+     *
+     * @return The first day of the day or month, or null for the statistics of all the transactions.
+     */
+    public LocalDate getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the number of transactions.
+     *
+     * @return The number of transactions.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of the amounts.
+     *
+     * @return The sum of the amounts, zero if there are no transactions.
+     */
+    public Money getSum() {
+        return sum;
+    }
+
+    /**
+     * Gets the smallest amount.
+     *
+     * @return The smallest amount, or null if there are no transactions.
+     */
+    public Money getMin() {
+        return min;
+    }
+
+    /**
+     * Gets the largest amount.
+     *
+     * @return The largest amount, or null if there are no transactions.
+     */
+    public Money getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the average amount, rounded half-even to the cent.
+     *
+     * @return The average amount, or null if there are no transactions.
+     */
+    public BigDecimal getAverage() {
+        if (count == 0) {
+            return null;
+        }
+        return sum.toBigDecimal().divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_EVEN);
+    }
+}
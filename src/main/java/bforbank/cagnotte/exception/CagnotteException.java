@@ -0,0 +1,20 @@
+package bforbank.cagnotte.exception;
+
+/**
+ * Base class of the exceptions reporting an expected error of a request, such as a missing client or an invalid parameter.
+ * These exceptions are stackless: they do not fill in a stack trace, record suppressed exceptions or take a cause,
+ * so that the common errors can be thrown from preallocated, immutable instances and cost about as much as a success.
+ * They are mapped to an HTTP status and an ApiError by the ApiExceptionHandler of the controllers.
+ */
+public abstract sealed class CagnotteException extends RuntimeException
+        permits ConflictException, InvalidRequestException, NotFoundException, ServiceUnavailableException {
+
+    /**
+     * Constructor for CagnotteException.
+     *
+     * @param message The error message, returned to the client.
+     */
+    protected CagnotteException(String message) {
+        super(message, null, false, false);
+    }
+}
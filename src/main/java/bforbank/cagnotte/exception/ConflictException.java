@@ -0,0 +1,23 @@
+package bforbank.cagnotte.exception;
+
+/**
+ * Exception thrown when a request conflicts with the current state of a resource. It is mapped to HTTP status 409 (Conflict).
+ */
+public final class ConflictException extends CagnotteException {
+
+    // Thrown when a client with the same name already exists
+    public static final ConflictException CLIENT_ALREADY_EXISTS = new ConflictException("Client already exists");
+
+    // Thrown when an idempotency key is reused by a client for a transaction with a different amount
+    public static final ConflictException IDEMPOTENCY_KEY_REUSED =
+            new ConflictException("Idempotency-Key already used for a different transaction");
+
+    /**
+     * Constructor for ConflictException.
+     *
+     * @param message The error message, returned to the client.
+     */
+    public ConflictException(String message) {
+        super(message);
+    }
+}
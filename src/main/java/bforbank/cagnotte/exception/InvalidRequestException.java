@@ -0,0 +1,59 @@
+package bforbank.cagnotte.exception;
+
+/**
+ * Exception thrown when the parameters of a request are invalid. It is mapped to HTTP status 400 (Bad Request).
+ */
+public final class InvalidRequestException extends CagnotteException {
+
+    // Thrown when the client id is missing
+    public static final InvalidRequestException CLIENTID_NULL = new InvalidRequestException("Clientid cannot be null");
+
+    // Thrown when the amount is missing
+    public static final InvalidRequestException AMOUNT_NULL = new InvalidRequestException("Amount cannot be null");
+
+    // Thrown when the amount is not a number
+    public static final InvalidRequestException AMOUNT_NOT_A_NUMBER = new InvalidRequestException("Amount must be a number");
+
+    // Thrown when the amount has more than two decimals
+    public static final InvalidRequestException AMOUNT_TOO_PRECISE = new InvalidRequestException("Amount must have at most 2 decimals");
+
+    // Thrown when the amount does not fit in a long count of cents
+    public static final InvalidRequestException AMOUNT_OUT_OF_RANGE = new InvalidRequestException("Amount is out of range");
+
+    // Thrown when the name of a new client is missing or invalid
+    public static final InvalidRequestException CLIENT_NAME_BLANK = new InvalidRequestException("Client name cannot be null or blank");
+
+    // Thrown when neither a valid client id nor a valid client name is given
+    public static final InvalidRequestException CLIENT_BLANK = new InvalidRequestException("Client cannot be null or blank");
+
+    // Thrown when the size of a page is not positive
+    public static final InvalidRequestException LIMIT_NOT_POSITIVE = new InvalidRequestException("Limit must be positive");
+
+    // Thrown when a batch request names more clients than allowed
+    public static final InvalidRequestException BATCH_TOO_LARGE = new InvalidRequestException("Too many clients in the batch");
+
+    // Thrown when the period of transaction statistics is neither day nor month
+    public static final InvalidRequestException PERIOD_INVALID = new InvalidRequestException("Period must be day or month");
+
+    // Thrown when the start of a range is after its end
+    public static final InvalidRequestException RANGE_INVALID = new InvalidRequestException("From cannot be after to");
+
+    // Thrown when a range of transaction statistics spans more buckets than allowed
+    public static final InvalidRequestException RANGE_TOO_LARGE = new InvalidRequestException("Too many buckets in the range");
+
+    // Thrown when a line of a bulk import cannot be parsed
+    public static final InvalidRequestException MALFORMED_LINE = new InvalidRequestException("Malformed line");
+
+    // Thrown when an idempotency key is blank or too long
+    public static final InvalidRequestException IDEMPOTENCY_KEY_INVALID =
+            new InvalidRequestException("Idempotency-Key must be 1 to 255 characters");
+
+    /**
+     * Constructor for InvalidRequestException.
+     *
+     * @param message The error message, returned to the client.
+     */
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
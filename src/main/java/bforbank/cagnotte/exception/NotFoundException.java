@@ -0,0 +1,22 @@
+package bforbank.cagnotte.exception;
+
+/**
+ * Exception thrown when a requested resource does not exist. It is mapped to HTTP status 404 (Not Found).
+ */
+public final class NotFoundException extends CagnotteException {
+
+    // Thrown when no client has the requested id or name
+    public static final NotFoundException CLIENT_NOT_FOUND = new NotFoundException("Client not found");
+
+    // Thrown when change events are read from a sink the outbox relay does not publish to
+    public static final NotFoundException EVENT_SINK_DISABLED = new NotFoundException("Events are not published to this sink");
+
+    /**
+     * Constructor for NotFoundException.
+     *
+     * @param message The error message, returned to the client.
+     */
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
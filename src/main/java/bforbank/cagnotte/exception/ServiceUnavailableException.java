@@ -0,0 +1,25 @@
+package bforbank.cagnotte.exception;
+
+/**
+ * Exception thrown when the application is too busy to accept a request. It is mapped to HTTP status 503 (Service Unavailable)
+ * with a Retry-After header.
+ */
+public final class ServiceUnavailableException extends CagnotteException {
+
+    // Thrown when the asynchronous transaction executor and its queue are full
+    public static final ServiceUnavailableException TRANSACTIONS_SATURATED =
+            new ServiceUnavailableException("Too many pending transactions, retry later");
+
+    // Thrown when an asynchronous transaction is not completed in time
+    public static final ServiceUnavailableException TRANSACTION_TIMEOUT =
+            new ServiceUnavailableException("Transaction timed out, its outcome is unknown");
+
+    /**
+     * Constructor for ServiceUnavailableException.
+     *
+     * @param message The error message, returned to the client.
+     */
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
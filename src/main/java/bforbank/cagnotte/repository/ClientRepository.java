@@ -2,8 +2,14 @@ package bforbank.cagnotte.repository;
 
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.LedgerBalance;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -20,4 +26,67 @@ public interface ClientRepository extends JpaRepository<Client, Integer> {
      * @return An Optional containing the Client object if found, or an empty Optional if not found.
      */
     Optional<Client> findByName(String name);
+
+    /**
+     * Finds the clients with the given names, with a single IN query on the unique name index.
+     *
+     * @param names The names of the clients to be retrieved.
+     * @return The clients found, in no particular order.
+     */
+    List<Client> findByNameIn(Collection<String> names);
+
+    /**
+     * Atomically credits a client's cagnotte with the amount of new transactions and increments their transaction count.
+     * Both are updated by the database in a single UPDATE statement, so concurrent transactions
+     * for the same client cannot overwrite each other.
+     *
+     * The query is native because JPQL does not allow arithmetic on converted attributes such as Money.
+     *
+     * @param id     The id of the client to credit.
+     * @param amount The total amount of the new transactions, in cents.
+     * @param count  The number of new transactions.
+     * @return The number of updated rows: 1 if the client exists, 0 otherwise.
+     */
+    @Modifying
+    @Query(value = "update client set cagnotte_cents = cagnotte_cents + :amount,"
+            + " transaction_count = transaction_count + :count where id = :id", nativeQuery = true)
+    int applyTransactions(@Param("id") Integer id, @Param("amount") long amount, @Param("count") int count);
+
+    /**
+     * Computes the balance of a client in the ledger mode: the cagnotte and transaction count of the client row,
+     * which hold the last snapshot, plus the transactions of the ledger tail.
+     * Both parts are read by a single statement, so a compaction committed concurrently is seen either entirely or not at all.
+     *
+     * @param id The id of the client.
+     * @return The balance of the client, or an empty Optional if the client does not exist.
+     */
+    @Query(value = "select c.id as id, c.cagnotte_cents + coalesce((select sum(t.amount_cents) from transaction t"
+            + " where t.client_id = c.id and t.snapshot_id is null), 0) as balance,"
+            + " c.transaction_count + (select count(*) from transaction t"
+            + " where t.client_id = c.id and t.snapshot_id is null) as transactions"
+            + " from client c where c.id = :id", nativeQuery = true)
+    Optional<LedgerBalance> findLedgerBalance(@Param("id") Integer id);
+
+    /**
+     * Computes the balances of several clients in the ledger mode, with a single query grouping their ledger tails.
+     *
+     * @param ids The ids of the clients.
+     * @return The balances of the clients found, in no particular order.
+     */
+    @Query(value = "select c.id as id, c.cagnotte_cents + coalesce(sum(t.amount_cents), 0) as balance,"
+            + " c.transaction_count + count(t.id) as transactions"
+            + " from client c left join transaction t on t.client_id = c.id and t.snapshot_id is null"
+            + " where c.id in (:ids) group by c.id, c.cagnotte_cents, c.transaction_count", nativeQuery = true)
+    List<LedgerBalance> findLedgerBalances(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds the clients whose transaction count does not match the number of their transactions.
+     * Transactions of the ledger tail are not counted on the client row yet, so they are left out.
+     * This query scans the whole transaction table and is only meant for consistency checks.
+     *
+     * @return The ids of the clients with an inconsistent transaction count.
+     */
+    @Query("select c.id from Client c where c.transactionCount is null"
+            + " or c.transactionCount <> (select count(t) from Transaction t where t.clientId = c.id and t.snapshotId is not null)")
+    List<Integer> findIdsWithInconsistentTransactionCount();
 }
\ No newline at end of file
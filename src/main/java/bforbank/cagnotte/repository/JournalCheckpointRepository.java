@@ -0,0 +1,30 @@
+package bforbank.cagnotte.repository;
+
+import bforbank.cagnotte.entities.JournalCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for handling journal checkpoint related database operations.
+ * This interface extends JpaRepository which provides JPA related methods such as save, delete, and find.
+ */
+@Repository
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, String> {
+
+    /**
+     * Finds the checkpoint of a journal and locks it until the end of the database transaction,
+     * so that two drainers of the same journal cannot write the same records.
+     *
+     * @param journal The name of the journal.
+     * @return An Optional containing the checkpoint if found, or an empty Optional if not found.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from JournalCheckpoint c where c.journal = :journal")
+    Optional<JournalCheckpoint> lockByJournal(@Param("journal") String journal);
+}
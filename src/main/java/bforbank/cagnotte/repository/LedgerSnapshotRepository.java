@@ -0,0 +1,23 @@
+package bforbank.cagnotte.repository;
+
+import bforbank.cagnotte.entities.LedgerSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for handling ledger snapshot related database operations.
+ * This interface extends JpaRepository which provides JPA related methods such as save, delete, and find.
+ */
+@Repository
+public interface LedgerSnapshotRepository extends JpaRepository<LedgerSnapshot, Integer> {
+
+    /**
+     * Finds all the snapshots of a client.
+     *
+     * @param clientId The id of the client whose snapshots are to be retrieved.
+     * @return The snapshots of the client, ordered by id.
+     */
+    List<LedgerSnapshot> findByClientIdOrderByIdAsc(Integer clientId);
+}
@@ -0,0 +1,24 @@
+package bforbank.cagnotte.repository;
+
+import bforbank.cagnotte.entities.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for handling outbox related database operations.
+ * This interface extends JpaRepository which provides JPA related methods such as save, delete, and find.
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Integer> {
+
+    /**
+     * Finds the oldest entries of the outbox.
+     *
+     * @param limit The maximum number of entries to return.
+     * @return The entries, ordered by id.
+     */
+    List<OutboxEvent> findByOrderByIdAsc(Limit limit);
+}
@@ -1,8 +1,19 @@
 package bforbank.cagnotte.repository;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionAggregate;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -12,6 +23,10 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Integer> {
 
+    // Selects the bucket of each transaction, from the yyyyMMdd key of its creation day, and its amount
+    String BUCKET_SELECT = "select floor((extract(year from created_at) * 10000 + extract(month from created_at) * 100 "
+            + "+ extract(day from created_at)) / :divisor) as bucket, amount_cents from transaction";
+
     /**
      * Finds all transactions associated with a specific client.
      *
@@ -20,6 +35,37 @@ public interface TransactionRepository extends JpaRepository<Transaction, Intege
      */
     List<Transaction> findByClientId(Integer clientId);
 
+    /**
+     * Finds a page of the transactions associated with a specific client, using the transaction id as a cursor.
+     *
+     * @param clientId The id of the client whose transactions are to be retrieved.
+     * @param after    The id after which transactions are retrieved.
+     * @param limit    The maximum number of transactions to retrieve.
+     * @return The transactions of the client with an id greater than after, ordered by id.
+     */
+    List<Transaction> findByClientIdAndIdGreaterThanOrderByIdAsc(Integer clientId, Integer after, Limit limit);
+
+    /**
+     * Streams all transactions associated with a specific client.
+     * Rows are fetched from a forward-only result set in small batches instead of being loaded all at once.
+     * The stream must be consumed and closed within a transaction.
+     *
+     * @param clientId The id of the client whose transactions are to be retrieved.
+     * @return A stream of the transactions of the client, ordered by id.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select t from Transaction t where t.clientId = :clientId order by t.id")
+    Stream<Transaction> streamByClientId(@Param("clientId") Integer clientId);
+
+    /**
+     * Finds a transaction of a client by its idempotency key.
+     *
+     * @param clientId The id of the client of the transaction.
+     * @param idempotencyKey The idempotency key given with the transaction.
+     * @return An Optional containing the Transaction object if found, or an empty Optional if not found.
+     */
+    Optional<Transaction> findByClientIdAndIdempotencyKey(Integer clientId, String idempotencyKey);
+
     /**
      * Counts the number of transactions associated with a specific client.
      *
@@ -27,4 +73,101 @@ public interface TransactionRepository extends JpaRepository<Transaction, Intege
      * @return The number of transactions associated with the client.
      */
     Integer countByClientId(Integer clientId);
+
+    /**
+     * Finds the clients with at least a given number of transactions in their ledger tail.
+     *
+     * @param threshold The minimum number of transactions in the tail.
+     * @param limit     The maximum number of clients to retrieve.
+     * @return The ids of the clients.
+     */
+    @Query("select t.clientId from Transaction t where t.snapshotId is null group by t.clientId having count(t) >= :threshold")
+    List<Integer> findClientIdsWithLedgerTail(@Param("threshold") long threshold, Limit limit);
+
+    /**
+     * Finds clients with a ledger tail, without scanning the transactions: each client is looked up
+     * in the (client_id, snapshot_id) index, and the search stops at the first one found.
+     *
+     * @param limit The maximum number of clients to retrieve.
+     * @return The ids of the clients.
+     */
+    @Query("select c.id from Client c where exists (select t.id from Transaction t where t.clientId = c.id and t.snapshotId is null)")
+    List<Integer> findClientIdsHavingLedgerTail(Limit limit);
+
+    /**
+     * Assigns the transactions of a client's ledger tail to a snapshot, removing them from the tail.
+     * The updated rows stay locked until the end of the database transaction, so they are exactly the ones summed by sumAmountBySnapshotId.
+     *
+     * @param clientId   The id of the client whose tail is compacted.
+     * @param snapshotId The id of the snapshot.
+     * @return The number of transactions assigned to the snapshot.
+     */
+    @Modifying
+    @Query("update Transaction t set t.snapshotId = :snapshotId where t.clientId = :clientId and t.snapshotId is null")
+    int assignLedgerTail(@Param("clientId") Integer clientId, @Param("snapshotId") Integer snapshotId);
+
+    /**
+     * Sums the amounts of the transactions of a client assigned to a snapshot.
+     * The query is native because JPQL does not allow arithmetic on converted attributes such as Money.
+     *
+     * @param clientId   The id of the client.
+     * @param snapshotId The id of the snapshot.
+     * @return The sum of the amounts, in cents.
+     */
+    @Query(value = "select coalesce(sum(amount_cents), 0) from transaction where client_id = :clientId and snapshot_id = :snapshotId",
+            nativeQuery = true)
+    long sumAmountBySnapshotId(@Param("clientId") Integer clientId, @Param("snapshotId") Integer snapshotId);
+
+    /**
+     * Aggregates all the transactions of a client.
+     *
+     * @param clientId The id of the client.
+     * @return The number of transactions and the sum, minimum and maximum of their amounts, without bucket.
+     */
+    @Query(value = "select count(*) as transactions, sum(amount_cents) as total, min(amount_cents) as minimum, "
+            + "max(amount_cents) as maximum from transaction where client_id = :clientId", nativeQuery = true)
+    TransactionAggregate aggregateByClientId(@Param("clientId") Integer clientId);
+
+    /**
+     * Aggregates the transactions of all clients.
+     *
+     * @return The number of transactions and the sum, minimum and maximum of their amounts, without bucket.
+     */
+    @Query(value = "select count(*) as transactions, sum(amount_cents) as total, min(amount_cents) as minimum, "
+            + "max(amount_cents) as maximum from transaction", nativeQuery = true)
+    TransactionAggregate aggregate();
+
+    /**
+     * Aggregates the transactions of a client created in a time range, grouped by day or by month in UTC.
+     * The yyyyMMdd key of each transaction is divided by the divisor, 1 for days and 100 for months, to get its bucket.
+     * The range is read from the (client_id, created_at) index.
+     *
+     * @param clientId The id of the client.
+     * @param from     The start of the range, inclusive.
+     * @param to       The end of the range, exclusive.
+     * @param divisor  1 to group by day, 100 to group by month.
+     * @return The aggregates of the non-empty buckets, ordered by bucket.
+     */
+    @Query(value = "select bucket, count(*) as transactions, sum(amount_cents) as total, min(amount_cents) as minimum, "
+            + "max(amount_cents) as maximum from (" + BUCKET_SELECT
+            + " where client_id = :clientId and created_at >= :from and created_at < :to) t group by bucket order by bucket",
+            nativeQuery = true)
+    List<TransactionAggregate> aggregateByClientIdAndBucket(@Param("clientId") Integer clientId, @Param("from") Instant from,
+                                                            @Param("to") Instant to, @Param("divisor") int divisor);
+
+    /**
+     * Aggregates the transactions of all clients created in a time range, grouped by day or by month in UTC.
+     * The range is read from the (created_at) index.
+     *
+     * @param from    The start of the range, inclusive.
+     * @param to      The end of the range, exclusive.
+     * @param divisor 1 to group by day, 100 to group by month.
+     * @return The aggregates of the non-empty buckets, ordered by bucket.
+     */
+    @Query(value = "select bucket, count(*) as transactions, sum(amount_cents) as total, min(amount_cents) as minimum, "
+            + "max(amount_cents) as maximum from (" + BUCKET_SELECT
+            + " where created_at >= :from and created_at < :to) t group by bucket order by bucket",
+            nativeQuery = true)
+    List<TransactionAggregate> aggregateByBucket(@Param("from") Instant from, @Param("to") Instant to,
+                                                 @Param("divisor") int divisor);
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service class making transactions on a dedicated, bounded executor, so that the request threads are released
+ * while the database is slow.
+ * The executor has a fixed number of threads and a bounded queue: once both are full, new transactions are rejected
+ * immediately instead of piling up, which gives callers backpressure.
+ * Its activity is published as executor.* meters, tagged name=transaction-async.
+ */
+@Service
+public class AsyncTransactionService {
+
+    private final TransactionService transactionService;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    /**
+     * Constructor for AsyncTransactionService.
+     *
+     * @param transactionService The service making the transactions.
+     * @param meterRegistry      The registry the executor metrics are published to.
+     * @param threads            The number of threads making transactions. More threads than database connections only wait for a connection.
+     * @param queueCapacity      The maximum number of transactions waiting for a thread.
+     * @param timeout            The time after which a transaction that is not completed is reported as timed out.
+     */
+    public AsyncTransactionService(TransactionService transactionService, MeterRegistry meterRegistry,
+                                   @Value("${cagnotte.transaction.async.threads:10}") int threads,
+                                   @Value("${cagnotte.transaction.async.queue-capacity:1000}") int queueCapacity,
+                                   @Value("${cagnotte.transaction.async.timeout:30s}") Duration timeout) {
+        this.transactionService = transactionService;
+        this.timeout = timeout;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "transaction-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        new ExecutorServiceMetrics(executor, "transaction-async", List.of()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Makes a transaction on the executor. See TransactionService.makeTransaction.
+     * The transaction is still made if the future times out: only the caller stops waiting for it.
+     *
+     * @param clientid The id of the client making the transaction. Cannot be null.
+     * @param amount   The amount of the transaction. Cannot be null.
+     * @return A future completed with the created Transaction, or completed exceptionally with the CagnotteException
+     *         of the failure, or with ServiceUnavailableException.TRANSACTION_TIMEOUT if it is not completed in time.
+     * @throws ServiceUnavailableException if the executor and its queue are full.
+     */
+    public CompletableFuture<Transaction> makeTransaction(Integer clientid, Money amount) {
+        CompletableFuture<Transaction> transaction;
+        try {
+            transaction = CompletableFuture.supplyAsync(() -> transactionService.makeTransaction(clientid, amount), executor);
+        } catch (RejectedExecutionException e) {
+            throw ServiceUnavailableException.TRANSACTIONS_SATURATED;
+        }
+        return transaction
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    return CompletableFuture.failedFuture(cause instanceof TimeoutException
+                            ? ServiceUnavailableException.TRANSACTION_TIMEOUT : cause);
+                });
+    }
+
+    /**
+     * Stops the executor once the queued transactions have been made.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,252 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.BalanceUpdate;
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service class pushing the balance and the availability of the cagnotte of clients to their Server-Sent Events subscribers.
+ * The TransactionBatchWriter reports the clients credited by each committed batch; only the clients with subscribers are kept,
+ * and a single notifier thread reads the balance of each of them once, however many transactions and subscribers it has,
+ * and sends it to its subscribers. An idle subscription holds no thread, only its open connection,
+ * and a comment is sent to every subscriber at a regular interval so that proxies do not close idle connections.
+ * Only the transactions written by this instance of the application are pushed.
+ * The number of subscriptions is published as the cagnotte.balance.subscribers gauge.
+ */
+@Service
+public class BalanceNotifier {
+
+    // Name of the event sent with the balance of the client, when it changes
+    public static final String BALANCE_EVENT = "balance";
+
+    // Name of the event sent when the availability of the cagnotte changes, and on subscription
+    public static final String AVAILABILITY_EVENT = "availability";
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceNotifier.class);
+
+    private final ClientService clientService;
+    private final ReplicaRouter replicaRouter;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final long heartbeatMs;
+    // Subscribers by client id
+    private final Map<Integer, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // Clients whose balance changed since the last notification
+    private final Set<Integer> changedClients = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean notificationScheduled = new AtomicBoolean();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ScheduledExecutorService notifierExecutor;
+
+    /**
+     * Subscription to the balance of a client. Its last sent events are only used by the notifier thread.
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        // The last balance sent, or null before the first one
+        private String balance;
+        // The last availability sent, or null before the first one
+        private Boolean available;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * Constructor for BalanceNotifier.
+     *
+     * @param clientService The service reading the balance of the clients.
+     * @param replicaRouter The router sending the balance reads to the primary, since they follow a write.
+     * @param objectMapper  The mapper writing the events, once per change whatever the number of subscribers.
+     * @param meterRegistry The registry the subscriber gauge is published to.
+     * @param timeout       The time after which a subscription is closed; the client then reconnects.
+     * @param heartbeat     The interval between two comments sent to keep the connections open.
+     */
+    public BalanceNotifier(ClientService clientService, ReplicaRouter replicaRouter, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${cagnotte.balance-stream.timeout:30m}") Duration timeout,
+                           @Value("${cagnotte.balance-stream.heartbeat:30s}") Duration heartbeat) {
+        this.clientService = clientService;
+        this.replicaRouter = replicaRouter;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeout.toMillis();
+        this.heartbeatMs = heartbeat.toMillis();
+        Gauge.builder("cagnotte.balance.subscribers", subscriberCount, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Starts the notifier thread and the heartbeat.
+     */
+    @PostConstruct
+    public void start() {
+        notifierExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        notifierExecutor.scheduleWithFixedDelay(this::sendHeartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the notifier thread and closes the subscriptions.
+     */
+    @PreDestroy
+    public void stop() {
+        notifierExecutor.shutdownNow();
+        subscribers.values().forEach(clientSubscribers -> clientSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribes to the balance of a client. The subscriber first receives the current balance and availability.
+     *
+     * @param clientId The id of the client. Cannot be null.
+     * @return The emitter sending the events to the subscriber.
+     * @throws InvalidRequestException if the clientId is null.
+     * @throws NotFoundException if a client with the provided id is not found.
+     */
+    public SseEmitter subscribe(Integer clientId) {
+        if (clientId == null) {
+            throw InvalidRequestException.CLIENTID_NULL;
+        }
+        clientService.getClientByIdOrName(clientId, null);
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(clientId, subscriber));
+        emitter.onTimeout(() -> unsubscribe(clientId, subscriber));
+        emitter.onError(e -> unsubscribe(clientId, subscriber));
+        subscribers.compute(clientId, (id, clientSubscribers) -> {
+            List<Subscriber> updated = clientSubscribers != null ? clientSubscribers : new CopyOnWriteArrayList<>();
+            updated.add(subscriber);
+            return updated;
+        });
+        subscriberCount.incrementAndGet();
+        // The current balance is sent by the notifier thread, so that it cannot overtake a newer one
+        clientsChanged(List.of(clientId));
+        return emitter;
+    }
+
+    /**
+     * Reports clients whose balance changed, once the change is committed.
+     * The clients without subscribers are ignored, so this costs a map lookup per client on the write path.
+     *
+     * @param clientIds The ids of the clients.
+     */
+    public void clientsChanged(Collection<Integer> clientIds) {
+        boolean changed = false;
+        for (Integer clientId : clientIds) {
+            if (subscribers.containsKey(clientId)) {
+                changedClients.add(clientId);
+                changed = true;
+            }
+        }
+        if (changed && notificationScheduled.compareAndSet(false, true)) {
+            notifierExecutor.execute(this::notifyChangedClients);
+        }
+    }
+
+    private void notifyChangedClients() {
+        notificationScheduled.set(false);
+        Iterator<Integer> clientIds = changedClients.iterator();
+        while (clientIds.hasNext()) {
+            Integer clientId = clientIds.next();
+            clientIds.remove();
+            try {
+                notifyClient(clientId);
+            } catch (RuntimeException e) {
+                log.warn("Notifying the balance of client {} failed", clientId, e);
+            }
+        }
+    }
+
+    private void notifyClient(Integer clientId) {
+        List<Subscriber> clientSubscribers = subscribers.get(clientId);
+        if (clientSubscribers == null) {
+            return;
+        }
+        BalanceUpdate update;
+        try {
+            update = replicaRouter.afterWrite(() -> {
+                Client client = clientService.getClientByIdOrName(clientId, null);
+                return new BalanceUpdate(clientId, client.getCagnotte(),
+                        TransactionService.isAvailable(client.getTransactionCount(), client.getCagnotte().toCents()));
+            });
+        } catch (NotFoundException e) {
+            clientSubscribers.forEach(subscriber -> subscriber.emitter.complete());
+            return;
+        }
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(update);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (Subscriber subscriber : clientSubscribers) {
+            try {
+                if (!data.equals(subscriber.balance)) {
+                    subscriber.emitter.send(SseEmitter.event().name(BALANCE_EVENT).data(data, MediaType.APPLICATION_JSON));
+                    subscriber.balance = data;
+                }
+                if (!Boolean.valueOf(update.isAvailable()).equals(subscriber.available)) {
+                    subscriber.emitter.send(SseEmitter.event().name(AVAILABILITY_EVENT).data(data, MediaType.APPLICATION_JSON));
+                    subscriber.available = update.isAvailable();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The subscriber is gone: it reconnects and gets the current balance
+                subscriber.emitter.completeWithError(e);
+                unsubscribe(clientId, subscriber);
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        subscribers.forEach((clientId, clientSubscribers) -> {
+            for (Subscriber subscriber : clientSubscribers) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    subscriber.emitter.completeWithError(e);
+                    unsubscribe(clientId, subscriber);
+                }
+            }
+        });
+    }
+
+    private void unsubscribe(Integer clientId, Subscriber subscriber) {
+        subscribers.computeIfPresent(clientId, (id, clientSubscribers) -> {
+            if (clientSubscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return clientSubscribers.isEmpty() ? null : clientSubscribers;
+        });
+    }
+}
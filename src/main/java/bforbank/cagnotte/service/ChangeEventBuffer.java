@@ -0,0 +1,76 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory ring of the latest change events, from which consumers read the events following an offset.
+ * When full, the oldest events are dropped: a consumer behind the oldest retained event resumes from it.
+ * It is not thread-safe; its users synchronize on it.
+ */
+public class ChangeEventBuffer {
+
+    private final ChangeEvent[] events;
+    // Index of the oldest event in the ring
+    private int head;
+    private int size;
+
+    /**
+     * Constructor for ChangeEventBuffer.
+     *
+     * @param capacity The number of events retained.
+     */
+    public ChangeEventBuffer(int capacity) {
+        this.events = new ChangeEvent[capacity];
+    }
+
+    /**
+     * Appends events, dropping the oldest ones if the buffer is full.
+     *
+     * @param published The events, with offsets greater than those of the retained events.
+     */
+    public void append(List<ChangeEvent> published) {
+        for (ChangeEvent event : published) {
+            if (size == events.length) {
+                events[head] = event;
+                head = (head + 1) % events.length;
+            } else {
+                events[(head + size) % events.length] = event;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Reads the events following an offset.
+     *
+     * @param after The offset of the last event already read, 0 to read from the oldest retained event.
+     * @param max   The maximum number of events to read.
+     * @return The events with an offset greater than after, in offset order.
+     */
+    public List<ChangeEvent> read(long after, int max) {
+        // Binary search of the first retained event after the offset
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (get(middle).getOffset() <= after) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int count = Math.min(max, size - low);
+        List<ChangeEvent> read = new ArrayList<>(count);
+        for (int i = low; i < low + count; i++) {
+            read.add(get(i));
+        }
+        return read;
+    }
+
+    private ChangeEvent get(int index) {
+        return events[(head + index) % events.length];
+    }
+}
@@ -0,0 +1,119 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.repository.ClientRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of ClientRepository for lookups by id and by name.
+ * Entries are evicted when the cache is full or when they are older than the configured TTL,
+ * and a client is evicted as soon as a transaction changing its cagnotte is committed.
+ * Hit, miss and eviction metrics are published as cache.* meters, tagged cache=clientsById and cache=clientIdsByName.
+ * Lookups of missing clients are not cached: a client created by another instance of the application
+ * would be reported missing until the entry expired, and unknown ids, which callers choose freely,
+ * would push the existing clients out of the cache. A miss costs one primary key lookup.
+ */
+@Component
+public class ClientCache {
+
+    private final ClientRepository clientRepository;
+    private final ShardRouter shardRouter;
+    private final AsyncCache<Integer, Client> clientsById;
+    // Names never change, so the name cache only maps a name to an id and the client itself is read from clientsById
+    private final AsyncCache<String, Integer> clientIdsByName;
+
+    /**
+     * Constructor for ClientCache.
+     *
+     * @param clientRepository The repository to handle client related database operations.
+     * @param shardRouter      The router reading each client from its shard.
+     * @param meterRegistry    The registry the cache metrics are published to.
+     * @param maximumSize      The maximum number of entries of each cache.
+     * @param ttl              The time after which an entry is evicted.
+     */
+    public ClientCache(ClientRepository clientRepository, ShardRouter shardRouter, MeterRegistry meterRegistry,
+                       @Value("${cagnotte.client-cache.maximum-size:10000}") long maximumSize,
+                       @Value("${cagnotte.client-cache.ttl:60s}") Duration ttl) {
+        this.clientRepository = clientRepository;
+        this.shardRouter = shardRouter;
+        this.clientsById = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().buildAsync();
+        this.clientIdsByName = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, clientsById, "clientsById");
+        CaffeineCacheMetrics.monitor(meterRegistry, clientIdsByName, "clientIdsByName");
+    }
+
+    /**
+     * Finds a client by id, reading it from the database on a cache miss.
+     * Concurrent lookups of the same id share a single load, and an eviction issued while the load is in progress
+     * discards its result, so a value read before a commit never outlives the eviction that follows it.
+     *
+     * @param id The id of the client to be retrieved.
+     * @return An Optional containing the Client object if found, or an empty Optional if not found.
+     */
+    public Optional<Client> findById(Integer id) {
+        return Optional.ofNullable(load(clientsById, id, key -> shardRouter.onShard(shardRouter.shardOf(key),
+                () -> clientRepository.findById(key).orElse(null))));
+    }
+
+    /**
+     * Finds a client by name, reading it from the database on a cache miss.
+     * Only the name to id mapping is cached for names; the client itself is then read through the id cache.
+     *
+     * @param name The name of the client to be retrieved.
+     * @return An Optional containing the Client object if found, or an empty Optional if not found.
+     */
+    public Optional<Client> findByName(String name) {
+        Integer id = load(clientIdsByName, name, key -> shardRouter.onShard(shardRouter.shardOf(key),
+                () -> clientRepository.findByName(key).map(Client::getId).orElse(null)));
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    /**
+     * Puts a client in the cache, for instance right after creating it.
+     *
+     * @param client The client to cache.
+     */
+    public void put(Client client) {
+        clientsById.put(client.getId(), CompletableFuture.completedFuture(client));
+        clientIdsByName.put(client.getName(), CompletableFuture.completedFuture(client.getId()));
+    }
+
+    /**
+     * Evicts a client from the cache, so that the next lookup reads it from the database.
+     *
+     * @param id The id of the client to evict.
+     */
+    public void evict(Integer id) {
+        clientsById.synchronous().invalidate(id);
+    }
+
+    /**
+     * Reads a value through an asynchronous cache, loading it on the calling thread on a miss.
+     * Only an empty future is inserted under the cache's lock; the blocking database read happens outside of it,
+     * so a virtual thread waiting on JDBC is never pinned to its carrier thread by the cache.
+     * Loads returning null or failing are removed from the cache by Caffeine.
+     */
+    private static <K, V> V load(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> value = cache.get(key, (k, executor) -> loading);
+        if (value == loading) {
+            try {
+                loading.complete(loader.apply(key));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return value.join();
+    }
+}
@@ -1,10 +1,22 @@
 package bforbank.cagnotte.service;
 
 import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
 import bforbank.cagnotte.repository.ClientRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Service class for handling client related operations.
@@ -13,65 +25,133 @@ import java.util.Optional;
 public class ClientService {
 
     private final ClientRepository clientRepository;
+    private final ClientCache clientCache;
+    private final LedgerService ledgerService;
+    private final ShardRouter shardRouter;
+    private final ReplicaRouter replicaRouter;
+    private final int maxBatchSize;
 
     /**
      * Constructor for ClientService.
      *
      * @param clientRepository The repository to handle client related database operations.
+     * @param clientCache The cache in front of the client repository.
+     * @param ledgerService The ledger service, computing the balances in the ledger mode.
+     * @param shardRouter The router sending the queries of each client to its shard.
+     * @param replicaRouter The router sending the batch reads to the read replicas.
+     * @param maxBatchSize The maximum number of ids and names in a batch request.
      */
-    public ClientService(ClientRepository clientRepository) {
+    public ClientService(ClientRepository clientRepository, ClientCache clientCache, LedgerService ledgerService,
+                         ShardRouter shardRouter, ReplicaRouter replicaRouter, @Value("${cagnotte.client.batch.max-size:1000}") int maxBatchSize) {
         this.clientRepository = clientRepository;
+        this.clientCache = clientCache;
+        this.ledgerService = ledgerService;
+        this.shardRouter = shardRouter;
+        this.replicaRouter = replicaRouter;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /**
      * Creates a new client.
+     * Uniqueness of the name is enforced by the unique constraint on client.name: the client is inserted
+     * directly and a duplicate-key violation is reported as an existing client, so concurrent creations
+     * with the same name cannot both succeed. The client is created on the shard of its name, so that the constraint
+     * of this shard covers every client with the same name.
      *
      * @param name     The name of the client to be created.
      * @param cagnotte The initial amount in the client's cagnotte.
      * @return The created Client object.
-     * @throws RuntimeException if a client with the same name already exists.
-     * @throws IllegalArgumentException if the name is null or blank.
+     * @throws ConflictException if a client with the same name already exists.
+     * @throws InvalidRequestException if the name is null or blank.
      */
-    public Client createClient(String name, Float cagnotte) {
+    public Client createClient(String name, Money cagnotte) {
         if (name == null || name.trim().isEmpty() || name.contains(",")) {
-            throw new IllegalArgumentException("Client name cannot be null or blank");
+            throw InvalidRequestException.CLIENT_NAME_BLANK;
         }
         if (cagnotte == null) {
-            cagnotte=0.0f;
+            cagnotte = Money.ZERO;
         }
-        Optional<Client> existingClient = clientRepository.findByName(name);
-        if (existingClient.isPresent()) {
-            throw new RuntimeException("Client already exists");
+        Client newClient = new Client();
+        newClient.setName(name);
+        newClient.setCagnotte(cagnotte);
+        Client client;
+        try {
+            client = shardRouter.onShard(shardRouter.shardOf(name), () -> clientRepository.save(newClient));
+        } catch (DataIntegrityViolationException e) {
+            throw ConflictException.CLIENT_ALREADY_EXISTS;
         }
-        Client client = new Client();
-        client.setName(name);
-        client.setCagnotte(cagnotte);
-        return clientRepository.save(client);
+        clientCache.put(client);
+        return client;
     }
 
     /**
      * Retrieves a client by id or name.
+     * Clients are read through the client cache. In the ledger mode, their cagnotte is then computed from the ledger.
      *
      * @param id   The id of the client to be retrieved. If not provided, the name parameter is used.
      * @param name The name of the client to be retrieved. If not provided, the id parameter is used.
      * @return The retrieved Client object.
-     * @throws RuntimeException if a client with the provided id or name is not found or if both id and name are null.
-     * @throws IllegalArgumentException if the client is null or blank.
+     * @throws NotFoundException if a client with the provided id or name is not found or if both id and name are null.
+     * @throws InvalidRequestException if the client is null or blank.
      */
     public Client getClientByIdOrName(Integer id, String name) {
         Client client = null;
         if(id==null && name==null || id==null && name.trim().isEmpty() || id==null && name.contains(",")){
-            throw new IllegalArgumentException("Client cannot be null or blank");
+            throw InvalidRequestException.CLIENT_BLANK;
         }
         if (id != null) {
-            client = clientRepository.findById(id).orElse(null);
+            client = clientCache.findById(id).orElse(null);
         }
         if (client == null && name != null) {
-            client = clientRepository.findByName(name).orElse(null);
+            client = clientCache.findByName(name).orElse(null);
         }
         if (client == null) {
-            throw new RuntimeException("Client not found");
+            throw NotFoundException.CLIENT_NOT_FOUND;
         }
-        return client;
+        return ledgerService.isEnabled() ? ledgerService.withBalance(client) : client;
+    }
+
+    /**
+     * Retrieves several clients by id and by name.
+     * The clients are read from the database with one IN query for the ids and one for the names per shard, whatever their number;
+     * in the ledger mode, their cagnotte is then computed with one more query per shard.
+     *
+     * @param request The ids and names of the clients to be retrieved. Null values are ignored.
+     * @return The clients found, once each, in the order of the ids and then of the names. Unknown ids and names are left out.
+     * @throws InvalidRequestException if the request has more ids and names than the maximum batch size.
+     */
+    public List<Client> getClients(ClientBatchRequest request) {
+        List<Integer> ids = request.getIds() == null ? List.of()
+                : request.getIds().stream().filter(Objects::nonNull).distinct().toList();
+        List<String> names = request.getNames() == null ? List.of()
+                : request.getNames().stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.size() + names.size() > maxBatchSize) {
+            throw InvalidRequestException.BATCH_TOO_LARGE;
+        }
+        Map<Integer, Client> clients = new LinkedHashMap<>();
+        if (!ids.isEmpty()) {
+            Map<Integer, Client> byId = new HashMap<>();
+            shardRouter.groupByShard(ids, shardRouter::shardOf).forEach((shard, shardIds) -> replicaRouter.read(() -> shardRouter.onShard(shard,
+                    () -> clientRepository.findAllById(shardIds))).forEach(client -> byId.put(client.getId(), client)));
+            for (Integer id : ids) {
+                Client client = byId.get(id);
+                if (client != null) {
+                    clients.put(id, client);
+                }
+            }
+        }
+        if (!names.isEmpty()) {
+            Map<String, Client> byName = new HashMap<>();
+            shardRouter.groupByShard(names, shardRouter::shardOf).forEach((shard, shardNames) -> replicaRouter.read(() -> shardRouter.onShard(shard,
+                    () -> clientRepository.findByNameIn(shardNames))).forEach(client -> byName.put(client.getName(), client)));
+            for (String name : names) {
+                Client client = byName.get(name);
+                if (client != null) {
+                    clients.putIfAbsent(client.getId(), client);
+                }
+            }
+        }
+        List<Client> found = new ArrayList<>(clients.values());
+        return ledgerService.isEnabled() ? ledgerService.withBalances(found) : found;
     }
 }
\ No newline at end of file
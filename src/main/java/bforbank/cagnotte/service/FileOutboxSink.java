@@ -0,0 +1,84 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sink appending the change events to a local file, named file.
+ * Each event is written as one JSON object per line (NDJSON), with its offset, and each batch is forced to disk
+ * before the relay deletes it from the outbox. Consumers tail the file, and resume by skipping the lines up to
+ * the last offset they processed.
+ */
+@Component
+public class FileOutboxSink implements OutboxSink {
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private FileChannel channel;
+
+    /**
+     * Constructor for FileOutboxSink.
+     *
+     * @param file         The path of the file the events are appended to. It is created if needed.
+     * @param objectMapper The mapper writing the events.
+     */
+    public FileOutboxSink(@Value("${cagnotte.outbox.file:outbox/events.ndjson}") String file, ObjectMapper objectMapper) {
+        this.path = Path.of(file);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEvent> events) {
+        try {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (ChangeEvent event : events) {
+                lines.write(objectMapper.writeValueAsBytes(event));
+                lines.write('\n');
+            }
+            if (channel == null) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the file, if it was opened.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
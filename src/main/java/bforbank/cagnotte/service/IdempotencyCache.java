@@ -0,0 +1,63 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Transaction;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded cache of the transactions made with an idempotency key, by client and key.
+ * A retried request is answered from it without reaching the database. Entries are evicted when the cache is full
+ * or when they are older than the configured TTL; the unique (client_id, idempotency_key) constraint still rejects a retry arriving after that.
+ * Hit, miss and eviction metrics are published as cache.* meters, tagged cache=idempotencyKeys.
+ */
+@Component
+public class IdempotencyCache {
+
+    private final Cache<Key, Transaction> transactionsByKey;
+
+    private record Key(Integer clientId, String idempotencyKey) {
+    }
+
+    /**
+     * Constructor for IdempotencyCache.
+     *
+     * @param meterRegistry The registry the cache metrics are published to.
+     * @param maximumSize   The maximum number of entries of the cache.
+     * @param ttl           The time after which an entry is evicted.
+     */
+    public IdempotencyCache(MeterRegistry meterRegistry,
+                            @Value("${cagnotte.transaction.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${cagnotte.transaction.idempotency.ttl:24h}") Duration ttl) {
+        this.transactionsByKey = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, transactionsByKey, "idempotencyKeys");
+    }
+
+    /**
+     * Finds the transaction made by a client with an idempotency key.
+     *
+     * @param clientId The id of the client.
+     * @param key      The idempotency key.
+     * @return An Optional containing the Transaction object if cached, or an empty Optional otherwise.
+     */
+    public Optional<Transaction> find(Integer clientId, String key) {
+        return Optional.ofNullable(transactionsByKey.getIfPresent(new Key(clientId, key)));
+    }
+
+    /**
+     * Puts the transaction made by a client with an idempotency key in the cache.
+     *
+     * @param clientId    The id of the client.
+     * @param key         The idempotency key.
+     * @param transaction The transaction made with it.
+     */
+    public void put(Integer clientId, String key, Transaction transaction) {
+        transactionsByKey.put(new Key(clientId, key), transaction);
+    }
+}
@@ -0,0 +1,106 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.JournalCheckpoint;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.repository.JournalCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Service class writing records of a transaction journal to the database, together with the journal checkpoint.
+ * With sharding, each shard has its own checkpoint row, written in the same database transaction as the records of its clients,
+ * so each shard skips the records it already has when a batch is retried after a failure on another shard.
+ */
+@Service
+public class JournalDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalDrainer.class);
+
+    private final TransactionBatchWriter batchWriter;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final ShardRouter shardRouter;
+
+    /**
+     * Constructor for JournalDrainer.
+     *
+     * @param batchWriter          The writer committing transactions to the database.
+     * @param checkpointRepository The repository to handle journal checkpoint related database operations.
+     * @param shardRouter          The router running the write of each shard on it.
+     */
+    public JournalDrainer(TransactionBatchWriter batchWriter, JournalCheckpointRepository checkpointRepository,
+                          ShardRouter shardRouter) {
+        this.batchWriter = batchWriter;
+        this.checkpointRepository = checkpointRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Gets the checkpoint of a journal, creating it if needed.
+     *
+     * @param journal The name of the journal.
+     * @return The sequence of the last record of the journal written to every shard, 0 if none.
+     */
+    public long checkpoint(String journal) {
+        long sequence = Long.MAX_VALUE;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            sequence = Math.min(sequence, shardRouter.inTransaction(shard, () -> checkpointRepository.findById(journal).orElseGet(() -> {
+                JournalCheckpoint checkpoint = new JournalCheckpoint();
+                checkpoint.setJournal(journal);
+                checkpoint.setSequence(0L);
+                return checkpointRepository.saveAndFlush(checkpoint);
+            }).getSequence()));
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes records of a journal to the database and advances its checkpoint, in a single database transaction per shard.
+     * Records up to the checkpoint of their shard are already written and are skipped, so a record is never written twice.
+     * The checkpoint of every shard is advanced, even without records for its clients.
+     *
+     * @param journal The name of the journal.
+     * @param records The records to write, in sequence order. Cannot be empty.
+     * @return The new checkpoint of the journal.
+     */
+    public long write(String journal, List<TransactionJournal.JournalRecord> records) {
+        long last = records.get(records.size() - 1).sequence();
+        Map<Integer, List<TransactionJournal.JournalRecord>> byShard =
+                shardRouter.groupByShard(records, record -> shardRouter.shardOf(record.clientId()));
+        long sequence = Long.MAX_VALUE;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            List<TransactionJournal.JournalRecord> shardRecords = byShard.getOrDefault(shard, List.of());
+            sequence = Math.min(sequence, shardRouter.inTransaction(shard, () -> writeShard(journal, shardRecords, last)));
+        }
+        return sequence;
+    }
+
+    private long writeShard(String journal, List<TransactionJournal.JournalRecord> records, long last) {
+        JournalCheckpoint checkpoint = checkpointRepository.lockByJournal(journal).orElseThrow();
+        List<Transaction> transactions = new ArrayList<>(records.size());
+        for (TransactionJournal.JournalRecord record : records) {
+            if (record.sequence() > checkpoint.getSequence()) {
+                Transaction transaction = new Transaction();
+                transaction.setClientId(record.clientId());
+                transaction.setAmount(Money.ofCents(record.amountCents()));
+                transactions.add(transaction);
+            }
+        }
+        System.out.println("WRITESHARD checkpoint " + checkpoint.getSequence() + " records " + records.size() + " tx " + transactions.size() + " last " + last + " " + Thread.currentThread().getName() + " clients " + records.stream().map(r -> r.clientId() + ":" + r.amountCents()).distinct().toList());
+        if (!transactions.isEmpty()) {
+            Set<Integer> unknownClients = batchWriter.write(transactions);
+            System.out.println("WRITESHARD unknown " + unknownClients + " ids " + transactions.get(0).getId() + " active " + org.springframework.transaction.support.TransactionSynchronizationManager.isActualTransactionActive());
+            if (!unknownClients.isEmpty()) {
+                log.warn("Journal records of unknown clients {} dropped", unknownClients);
+            }
+        }
+        checkpoint.setSequence(Math.max(checkpoint.getSequence(), last));
+        return checkpoint.getSequence();
+    }
+}
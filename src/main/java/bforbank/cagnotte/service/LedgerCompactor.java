@@ -0,0 +1,106 @@
+package bforbank.cagnotte.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Component compacting the ledger tails in the background.
+ * In the ledger mode, it periodically folds the tail of each client with enough pending transactions into the client row.
+ * Outside of it, it folds at startup the tails left by a previous run in the ledger mode,
+ * since balances are then read from the client row only.
+ */
+@Component
+public class LedgerCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerCompactor.class);
+
+    private final LedgerService ledgerService;
+    private final ShardRouter shardRouter;
+    private final Timer compactionTimer;
+    private final long threshold;
+    private final int batchSize;
+
+    /**
+     * Constructor for LedgerCompactor.
+     *
+     * @param ledgerService The service compacting the tail of a client.
+     * @param shardRouter   The router running the compactions of each shard on it.
+     * @param meterRegistry The registry the compaction timer is published to.
+     * @param threshold     The minimum number of transactions in the tail of a client for it to be compacted.
+     * @param batchSize     The maximum number of clients looked up at once.
+     */
+    public LedgerCompactor(LedgerService ledgerService, ShardRouter shardRouter, MeterRegistry meterRegistry,
+                           @Value("${cagnotte.ledger.compaction-threshold:100}") long threshold,
+                           @Value("${cagnotte.ledger.compaction-batch-size:100}") int batchSize) {
+        this.ledgerService = ledgerService;
+        this.shardRouter = shardRouter;
+        this.compactionTimer = Timer.builder("cagnotte.ledger.compaction").register(meterRegistry);
+        this.threshold = threshold;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Folds the tails left by a previous run in the ledger mode, if the mode is now disabled.
+     * The shards are first checked for a tail with an indexed lookup, so that a startup without tails
+     * does not aggregate the transaction table.
+     */
+    @PostConstruct
+    public void foldTailsWhenDisabled() {
+        if (!ledgerService.isEnabled() && hasTails()) {
+            int compacted = compactTails(1);
+            if (compacted > 0) {
+                log.info("{} ledger transactions folded into the client rows", compacted);
+            }
+        }
+    }
+
+    private boolean hasTails() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            if (shardRouter.onShard(shard, ledgerService::hasLedgerTail)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compacts the tails reaching the threshold, if the ledger mode is enabled.
+     */
+    @Scheduled(fixedDelayString = "${cagnotte.ledger.compaction-interval-ms:60000}",
+            initialDelayString = "${cagnotte.ledger.compaction-interval-ms:60000}")
+    public void compact() {
+        if (ledgerService.isEnabled()) {
+            compactionTimer.record(() -> compactTails(threshold));
+        }
+    }
+
+    /**
+     * Compacts the tail of every client with at least a given number of pending transactions.
+     * Each client is compacted in its own database transaction, on its shard.
+     *
+     * @param minimum The minimum number of transactions in the tail of a client for it to be compacted.
+     * @return The number of transactions folded into the client rows.
+     */
+    public int compactTails(long minimum) {
+        int compacted = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int current = shard;
+            List<Integer> clientIds;
+            do {
+                clientIds = shardRouter.onShard(current, () -> ledgerService.findClientsToCompact(minimum, batchSize));
+                for (Integer clientId : clientIds) {
+                    compacted += shardRouter.onShard(current, () -> ledgerService.compact(clientId));
+                }
+            } while (clientIds.size() == batchSize);
+        }
+        return compacted;
+    }
+}
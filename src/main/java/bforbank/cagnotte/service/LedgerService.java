@@ -0,0 +1,196 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.LedgerBalance;
+import bforbank.cagnotte.entities.LedgerSnapshot;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.LedgerSnapshotRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service class for the append-only ledger mode.
+ * In this mode, writing a transaction only inserts it: the client row is not updated, so concurrent deposits
+ * for the same client do not contend on its row lock. The balance of a client is its client row, which holds
+ * the last snapshot, plus the ledger tail: the transactions not yet assigned to a snapshot.
+ * Compactions fold the tail into the client row in the background and record a snapshot.
+ * With sharding, the snapshots of a client live on its shard, and compact must be called on that shard.
+ */
+@Service
+public class LedgerService {
+
+    private final ClientRepository clientRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerSnapshotRepository snapshotRepository;
+    private final ClientCache clientCache;
+    private final ShardRouter shardRouter;
+    private final ReplicaRouter replicaRouter;
+    private final Counter compactedTransactions;
+    private final boolean enabled;
+
+    /**
+     * Constructor for LedgerService.
+     *
+     * @param clientRepository      The repository to handle client related database operations.
+     * @param transactionRepository The repository to handle transaction related database operations.
+     * @param snapshotRepository    The repository to handle ledger snapshot related database operations.
+     * @param clientCache           The client cache, from which compacted clients are evicted once the compaction is committed.
+     * @param shardRouter           The router sending the balance queries of each client to its shard.
+     * @param replicaRouter         The router sending the balance queries to the read replicas.
+     * @param meterRegistry         The registry the compaction metrics are published to.
+     * @param enabled               Whether the ledger mode is enabled.
+     */
+    public LedgerService(ClientRepository clientRepository, TransactionRepository transactionRepository,
+                         LedgerSnapshotRepository snapshotRepository, ClientCache clientCache, ShardRouter shardRouter,
+                         ReplicaRouter replicaRouter, MeterRegistry meterRegistry,
+                         @Value("${cagnotte.ledger.enabled:false}") boolean enabled) {
+        this.clientRepository = clientRepository;
+        this.transactionRepository = transactionRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.clientCache = clientCache;
+        this.shardRouter = shardRouter;
+        this.replicaRouter = replicaRouter;
+        this.compactedTransactions = meterRegistry.counter("cagnotte.ledger.compacted.transactions");
+        this.enabled = enabled;
+    }
+
+    /**
+     * Indicates whether the ledger mode is enabled.
+     *
+     * @return true if transactions are only appended and balances are computed from the ledger.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Computes the balance of a client from the ledger.
+     *
+     * @param clientId The id of the client.
+     * @return The balance of the client, or an empty Optional if the client does not exist.
+     */
+    public Optional<LedgerBalance> findBalance(Integer clientId) {
+        return replicaRouter.read(() -> shardRouter.onShard(shardRouter.shardOf(clientId),
+                () -> clientRepository.findLedgerBalance(clientId)));
+    }
+
+    /**
+     * Returns copies of clients with the cagnotte and transaction count computed from the ledger, with a single query per shard.
+     * The given clients are left unchanged.
+     *
+     * @param clients The clients.
+     * @return The clients with their ledger balance, in the same order.
+     */
+    public List<Client> withBalances(List<Client> clients) {
+        if (clients.isEmpty()) {
+            return clients;
+        }
+        Map<Integer, LedgerBalance> balances = new HashMap<>();
+        List<Integer> ids = clients.stream().map(Client::getId).toList();
+        shardRouter.groupByShard(ids, shardRouter::shardOf).forEach((shard, shardIds) -> {
+            for (LedgerBalance balance : replicaRouter.read(() -> shardRouter.onShard(shard,
+                    () -> clientRepository.findLedgerBalances(shardIds)))) {
+                balances.put(balance.getId(), balance);
+            }
+        });
+        List<Client> views = new ArrayList<>(clients.size());
+        for (Client client : clients) {
+            LedgerBalance balance = balances.get(client.getId());
+            views.add(balance == null ? client : view(client, balance));
+        }
+        return views;
+    }
+
+    /**
+     * Returns a copy of a client with the cagnotte and transaction count computed from the ledger.
+     * The given client, which may be shared through the client cache, is left unchanged.
+     *
+     * @param client The client.
+     * @return The client with its ledger balance, or the given client if it does not exist anymore.
+     */
+    public Client withBalance(Client client) {
+        return findBalance(client.getId()).map(balance -> view(client, balance)).orElse(client);
+    }
+
+    private static Client view(Client client, LedgerBalance balance) {
+        Client view = new Client();
+        view.setId(client.getId());
+        view.setName(client.getName());
+        view.setCagnotte(Money.ofCents(balance.getBalance()));
+        view.setTransactionCount(Math.toIntExact(balance.getTransactions()));
+        return view;
+    }
+
+    /**
+     * Finds the clients of the current shard whose ledger tail should be compacted.
+     *
+     * @param threshold The minimum number of transactions in the tail.
+     * @param limit     The maximum number of clients to retrieve.
+     * @return The ids of the clients with at least threshold transactions in their tail.
+     */
+    public List<Integer> findClientsToCompact(long threshold, int limit) {
+        return transactionRepository.findClientIdsWithLedgerTail(threshold, Limit.of(limit));
+    }
+
+    /**
+     * Indicates whether a client has transactions in its ledger tail.
+     *
+     * @return true if at least one transaction is not folded into its client row yet.
+     */
+    public boolean hasLedgerTail() {
+        return !transactionRepository.findClientIdsHavingLedgerTail(Limit.of(1)).isEmpty();
+    }
+
+    /**
+     * Compacts the ledger tail of a client.
+     * A snapshot is created, the transactions of the tail are assigned to it, and their sum and count are added
+     * to the client row with one atomic UPDATE, all in the same database transaction. Balance reads therefore see
+     * the transactions either in the tail or in the client row, never in both or neither. Transactions appended
+     * during the compaction stay in the tail until the next one.
+     *
+     * @param clientId The id of the client to compact.
+     * @return The number of transactions folded into the client row, 0 if the tail was empty.
+     */
+    @Transactional
+    public int compact(Integer clientId) {
+        LedgerSnapshot snapshot = new LedgerSnapshot();
+        snapshot.setClientId(clientId);
+        snapshot.setCreatedAt(Instant.now());
+        snapshot = snapshotRepository.save(snapshot);
+        int count = transactionRepository.assignLedgerTail(clientId, snapshot.getId());
+        if (count == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return 0;
+        }
+        long amount = transactionRepository.sumAmountBySnapshotId(clientId, snapshot.getId());
+        clientRepository.applyTransactions(clientId, amount, count);
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        snapshot.setBalance(client.getCagnotte());
+        snapshot.setTransactionCount(client.getTransactionCount());
+        snapshot.setCompactedTransactions(count);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                clientCache.evict(clientId);
+                compactedTransactions.increment(count);
+            }
+        });
+        return count;
+    }
+}
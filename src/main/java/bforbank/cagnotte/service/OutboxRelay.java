@@ -0,0 +1,159 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+import bforbank.cagnotte.entities.JournalCheckpoint;
+import bforbank.cagnotte.entities.OutboxEvent;
+import bforbank.cagnotte.repository.JournalCheckpointRepository;
+import bforbank.cagnotte.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service class relaying the transactions of the outbox to the configured sink, as change events.
+ * It periodically reads the outbox of each shard in batches, numbers the events with offsets, publishes them,
+ * and deletes them from the outbox. The offsets of a batch are reserved in the outbox checkpoint before it is published,
+ * so an offset is never handed out twice, even after a crash.
+ * Delivery is at least once: a batch published but not deleted before a crash is published again under new offsets.
+ * The relay must run on a single instance of the application.
+ * The relay times and the number of published events are published as cagnotte.outbox.* meters.
+ */
+@Service
+public class OutboxRelay {
+
+    // Name of the checkpoint holding the last offset handed out
+    public static final String CHECKPOINT = "outbox";
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxRepository;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final ShardRouter shardRouter;
+    private final OutboxSink sink;
+    private final Timer relayTimer;
+    private final Counter publishedEvents;
+    private final boolean enabled;
+    private final int batchSize;
+
+    /**
+     * Constructor for OutboxRelay.
+     *
+     * @param outboxRepository     The repository of the outbox.
+     * @param checkpointRepository The repository of the checkpoint holding the last offset, on the first shard.
+     * @param shardRouter          The router reading the outbox of each shard.
+     * @param sinks                The available sinks.
+     * @param meterRegistry        The registry the relay metrics are published to.
+     * @param enabled              Whether the outbox is enabled.
+     * @param sinkName             The name of the sink the events are published to: queue, file or sse.
+     * @param batchSize            The maximum number of events published at once.
+     * @throws IllegalStateException if the outbox is enabled and no sink has the configured name.
+     */
+    public OutboxRelay(OutboxEventRepository outboxRepository, JournalCheckpointRepository checkpointRepository,
+                       ShardRouter shardRouter, List<OutboxSink> sinks, MeterRegistry meterRegistry,
+                       @Value("${cagnotte.outbox.enabled:false}") boolean enabled,
+                       @Value("${cagnotte.outbox.sink:queue}") String sinkName,
+                       @Value("${cagnotte.outbox.batch-size:500}") int batchSize) {
+        this.outboxRepository = outboxRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.shardRouter = shardRouter;
+        this.sink = sinks.stream().filter(candidate -> candidate.getName().equals(sinkName)).findFirst().orElse(null);
+        if (enabled && sink == null) {
+            throw new IllegalStateException("Unknown outbox sink " + sinkName);
+        }
+        this.relayTimer = Timer.builder("cagnotte.outbox.relay").register(meterRegistry);
+        this.publishedEvents = meterRegistry.counter("cagnotte.outbox.published");
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Indicates whether the events are published to a sink.
+     *
+     * @param sinkName The name of the sink.
+     * @return true if the outbox is enabled and the events are published to this sink.
+     */
+    public boolean publishesTo(String sinkName) {
+        return enabled && sink.getName().equals(sinkName);
+    }
+
+    /**
+     * Relays the outbox, if enabled. A failed relay is retried by the next one.
+     */
+    @Scheduled(fixedDelayString = "${cagnotte.outbox.relay-interval-ms:100}",
+            initialDelayString = "${cagnotte.outbox.relay-interval-ms:100}")
+    public void relaySafely() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            relayTimer.record(this::relay);
+        } catch (RuntimeException e) {
+            // The events stay in the outbox and are published by the next relay
+            log.warn("Relaying the outbox failed", e);
+        }
+    }
+
+    /**
+     * Publishes the events of the outbox of every shard, in batches, and deletes them from the outbox.
+     *
+     * @return The number of events published.
+     */
+    public int relay() {
+        int published = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int current = shard;
+            List<OutboxEvent> entries;
+            do {
+                entries = shardRouter.onShard(current, () -> outboxRepository.findByOrderByIdAsc(Limit.of(batchSize)));
+                if (entries.isEmpty()) {
+                    break;
+                }
+                long offset = reserveOffsets(entries.size());
+                List<ChangeEvent> events = new ArrayList<>(entries.size());
+                List<Integer> ids = new ArrayList<>(entries.size());
+                for (OutboxEvent entry : entries) {
+                    events.add(new ChangeEvent(offset++, entry));
+                    ids.add(entry.getId());
+                }
+                sink.publish(events);
+                shardRouter.inTransaction(current, () -> {
+                    outboxRepository.deleteAllByIdInBatch(ids);
+                    return null;
+                });
+                publishedEvents.increment(events.size());
+                published += events.size();
+            } while (entries.size() == batchSize);
+        }
+        return published;
+    }
+
+    /**
+     * Reserves offsets in the outbox checkpoint, kept on the first shard.
+     *
+     * @param count The number of offsets to reserve.
+     * @return The first offset reserved.
+     */
+    private long reserveOffsets(int count) {
+        return shardRouter.inTransaction(0, () -> {
+            JournalCheckpoint checkpoint = checkpointRepository.lockByJournal(CHECKPOINT).orElseGet(() -> {
+                JournalCheckpoint created = new JournalCheckpoint();
+                created.setJournal(CHECKPOINT);
+                created.setSequence(0L);
+                return created;
+            });
+            long first = checkpoint.getSequence() + 1;
+            checkpoint.setSequence(checkpoint.getSequence() + count);
+            checkpointRepository.save(checkpoint);
+            return first;
+        });
+    }
+}
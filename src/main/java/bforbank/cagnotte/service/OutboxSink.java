@@ -0,0 +1,27 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the change events published by the outbox relay.
+ * The sink receiving the events is chosen by name with cagnotte.outbox.sink.
+ */
+public interface OutboxSink {
+
+    /**
+     * Gets the name of the sink, as configured in cagnotte.outbox.sink.
+     *
+     * @return The name of the sink.
+     */
+    String getName();
+
+    /**
+     * Publishes a batch of events. Once it returns, the events are not published again, barring a crash.
+     *
+     * @param events The events, in offset order.
+     * @throws RuntimeException if the events cannot be published; they are then published again by the next relay.
+     */
+    void publish(List<ChangeEvent> events);
+}
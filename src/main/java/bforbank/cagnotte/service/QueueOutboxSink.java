@@ -0,0 +1,64 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sink keeping the change events in an in-process queue, named queue.
+ * Consumers poll the events following the last offset they processed, in the application or through GET /events.
+ * The latest cagnotte.outbox.queue.capacity events are retained, in memory only: they are lost on restart.
+ */
+@Component
+public class QueueOutboxSink implements OutboxSink {
+
+    private final ChangeEventBuffer buffer;
+
+    /**
+     * Constructor for QueueOutboxSink.
+     *
+     * @param capacity The number of events retained.
+     */
+    public QueueOutboxSink(@Value("${cagnotte.outbox.queue.capacity:10000}") int capacity) {
+        this.buffer = new ChangeEventBuffer(capacity);
+    }
+
+    @Override
+    public String getName() {
+        return "queue";
+    }
+
+    @Override
+    public void publish(List<ChangeEvent> events) {
+        synchronized (buffer) {
+            buffer.append(events);
+            buffer.notifyAll();
+        }
+    }
+
+    /**
+     * Polls the events following an offset, waiting for some to be published if there are none yet.
+     *
+     * @param after   The offset of the last event processed, 0 to read from the oldest retained event.
+     * @param max     The maximum number of events to return.
+     * @param timeout The maximum time to wait for events, zero not to wait.
+     * @return The events with an offset greater than after, in offset order, or an empty list if none came in time.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public List<ChangeEvent> poll(long after, int max, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (buffer) {
+            List<ChangeEvent> events = buffer.read(after, max);
+            long remaining = deadline - System.nanoTime();
+            while (events.isEmpty() && remaining > 0) {
+                buffer.wait(Math.max(1, remaining / 1_000_000));
+                events = buffer.read(after, max);
+                remaining = deadline - System.nanoTime();
+            }
+            return events;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.config.ReplicaContext;
+import bforbank.cagnotte.config.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Service class sending read-only operations to the read replicas.
+ * A replica applies the writes of the primary with some lag, so a client that just wrote must not read from a replica
+ * that has not applied its write yet: every write returns a consistency token, the replication position (GTID) of the
+ * primary once the write is committed, that the client sends back with its next reads in the Consistency-Token header.
+ * A read carrying a token goes to a replica only if the replica has reached that position, checked with
+ * cagnotte.replica.wait-query; otherwise it goes to the primary.
+ * The reads, by target, are counted by the cagnotte.replica.reads counter.
+ * Without read replicas, every operation runs on the primary and no token is returned.
+ */
+@Service
+public class ReplicaRouter {
+
+    // Name of the HTTP header carrying the consistency token, on the responses to writes and on the requests
+    public static final String CONSISTENCY_TOKEN_HEADER = "Consistency-Token";
+
+    // A MariaDB GTID position: comma-separated domain-server-sequence triplets
+    private static final Pattern GTID_POSITION = Pattern.compile("\\d{1,10}-\\d{1,10}-\\d{1,20}(,\\d{1,10}-\\d{1,10}-\\d{1,20}){0,63}");
+
+    // Token of the reads that must go to the primary, when the position of the primary cannot be read
+    private static final String PRIMARY_ONLY = "primary";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private final ReplicaRoutingDataSource dataSource;
+    private final JdbcTemplate primaryJdbc;
+    private final List<JdbcTemplate> replicaJdbc = new ArrayList<>();
+    private final String positionQuery;
+    private final String waitQuery;
+    private final double maxWaitSeconds;
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    /**
+     * Constructor for ReplicaRouter.
+     *
+     * @param meterRegistry The registry the read counters are published to.
+     * @param dataSource    The datasource routing to the primary and the replicas, absent if the read replicas are disabled.
+     * @param positionQuery The query reading the replication position of the primary.
+     * @param waitQuery     The query checking that a replica has reached a position, within a timeout in seconds;
+     *                      it returns 0 if it has.
+     * @param maxWait       The maximum time a read waits for a replica to reach the position of its token.
+     */
+    public ReplicaRouter(MeterRegistry meterRegistry, Optional<ReplicaRoutingDataSource> dataSource,
+                         @Value("${cagnotte.replica.position-query:select @@gtid_binlog_pos}") String positionQuery,
+                         @Value("${cagnotte.replica.wait-query:select master_gtid_wait(?, ?)}") String waitQuery,
+                         @Value("${cagnotte.replica.max-wait:0s}") Duration maxWait) {
+        this.dataSource = dataSource.orElse(null);
+        this.primaryJdbc = this.dataSource == null ? null : new JdbcTemplate(this.dataSource.getPrimary());
+        if (this.dataSource != null) {
+            for (int replica = 0; replica < this.dataSource.getReplicaCount(); replica++) {
+                replicaJdbc.add(new JdbcTemplate(this.dataSource.getReplica(replica)));
+            }
+        }
+        this.positionQuery = positionQuery;
+        this.waitQuery = waitQuery;
+        this.maxWaitSeconds = maxWait.toMillis() / 1000.0;
+        this.replicaReads = Counter.builder("cagnotte.replica.reads").tag("target", "replica").register(meterRegistry);
+        this.primaryReads = Counter.builder("cagnotte.replica.reads").tag("target", "primary").register(meterRegistry);
+    }
+
+    /**
+     * Indicates whether a consistency token sent by a client is well-formed.
+     *
+     * @param token The token.
+     * @return true if the token is a GTID position, false otherwise.
+     */
+    public static boolean isValidToken(String token) {
+        return token != null && GTID_POSITION.matcher(token).matches();
+    }
+
+    /**
+     * Adds the consistency token of a write that has just been committed to the headers of its response.
+     * Nothing is added without read replicas, or if the position of the primary cannot be read.
+     *
+     * @param headers The headers of the response to the write.
+     */
+    public void addWriteToken(HttpHeaders headers) {
+        if (dataSource == null) {
+            return;
+        }
+        String position = primaryPosition();
+        if (position != null) {
+            headers.set(CONSISTENCY_TOKEN_HEADER, position);
+        }
+    }
+
+    /**
+     * Runs a read-only operation on a replica, or on the primary when the replica has not reached the consistency token
+     * of the current request, or when a transaction is in progress, since the operation would join it.
+     * The operation runs on the primary if no replica connection can be obtained.
+     * The operation must start its own transactions: a replica connection is only taken when a transaction begins.
+     *
+     * @param action The operation to run.
+     * @return The result of the operation.
+     */
+    public <T> T read(Supplier<T> action) {
+        if (ReplicaContext.getReplica() != null) {
+            // Nested within a replica read
+            return action.get();
+        }
+        Integer replica = selectReplica();
+        if (replica == null) {
+            primaryReads.increment();
+            return action.get();
+        }
+        try {
+            ReplicaContext.setReplica(replica);
+            T result = action.get();
+            replicaReads.increment();
+            return result;
+        } catch (CannotCreateTransactionException e) {
+            log.warn("No connection available on replica {}, reading from the primary", replica, e);
+        } finally {
+            ReplicaContext.setReplica(null);
+        }
+        primaryReads.increment();
+        return action.get();
+    }
+
+    /**
+     * Runs an operation whose reads must see the writes just committed, as if its client had just written.
+     * It is used by the background tasks reacting to a write, which have no request to carry a consistency token.
+     *
+     * @param action The operation to run.
+     * @return The result of the operation.
+     */
+    public <T> T afterWrite(Supplier<T> action) {
+        if (dataSource == null) {
+            return action.get();
+        }
+        String position = primaryPosition();
+        String previous = ReplicaContext.getWriteToken();
+        ReplicaContext.setWriteToken(position != null ? position : PRIMARY_ONLY);
+        try {
+            return action.get();
+        } finally {
+            ReplicaContext.setWriteToken(previous);
+        }
+    }
+
+    /**
+     * Binds an operation to the consistency token of the current request, so that its reads keep it when it runs
+     * on another thread, such as the body of a streamed response.
+     *
+     * @param action The operation to run later.
+     * @return The operation, running with the consistency token of the current request.
+     */
+    public <T> Consumer<T> withCurrentToken(Consumer<T> action) {
+        String token = ReplicaContext.getWriteToken();
+        return value -> {
+            String previous = ReplicaContext.getWriteToken();
+            ReplicaContext.setWriteToken(token);
+            try {
+                action.accept(value);
+            } finally {
+                ReplicaContext.setWriteToken(previous);
+            }
+        };
+    }
+
+    private Integer selectReplica() {
+        if (dataSource == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        String writeToken = ReplicaContext.getWriteToken();
+        if (PRIMARY_ONLY.equals(writeToken)) {
+            return null;
+        }
+        int replica = dataSource.nextReplica();
+        return writeToken == null || hasReached(replica, writeToken) ? replica : null;
+    }
+
+    private String primaryPosition() {
+        try {
+            return primaryJdbc.queryForObject(positionQuery, String.class);
+        } catch (DataAccessException e) {
+            log.warn("Unable to read the replication position of the primary", e);
+            return null;
+        }
+    }
+
+    private boolean hasReached(int replica, String position) {
+        try {
+            Integer result = replicaJdbc.get(replica).queryForObject(waitQuery, Integer.class, position, maxWaitSeconds);
+            return result != null && result == 0;
+        } catch (DataAccessException e) {
+            log.warn("Unable to check the replication position of replica {}, reading from the primary", replica, e);
+            return false;
+        }
+    }
+}
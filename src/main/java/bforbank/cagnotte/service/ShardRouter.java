@@ -0,0 +1,134 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.config.ShardContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Service class routing the database operations of a client to its shard.
+ * A client lives on the shard given by a hash of its name, and its id is allocated on that shard, so both its id
+ * and its name lead to its shard without a lookup: shardOf(id) is the id modulo the number of shards.
+ * The transactions, ledger snapshots and journal checkpoints of a client live on the same shard.
+ * Without sharding, there is a single shard and every operation runs on it.
+ */
+@Service
+public class ShardRouter {
+
+    private final int shardCount;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * Constructor for ShardRouter.
+     *
+     * @param transactionManager The transaction manager, used to run a transaction on a given shard.
+     * @param shardingEnabled    Whether the sharding mode is enabled.
+     * @param urls               The JDBC URLs of the shards, when the sharding mode is enabled.
+     */
+    public ShardRouter(PlatformTransactionManager transactionManager,
+                       @Value("${cagnotte.sharding.enabled:false}") boolean shardingEnabled,
+                       @Value("${cagnotte.sharding.urls:}") List<String> urls) {
+        this.shardCount = shardingEnabled ? urls.size() : 1;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return The number of shards, 1 without sharding.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Gets the shard of a client from its id.
+     *
+     * @param clientId The id of the client.
+     * @return The index of the shard.
+     */
+    public int shardOf(int clientId) {
+        return Math.floorMod(clientId, shardCount);
+    }
+
+    /**
+     * Gets the shard of a client from its name. New clients are created on this shard.
+     *
+     * @param name The name of the client.
+     * @return The index of the shard.
+     */
+    public int shardOf(String name) {
+        return Math.floorMod(name.hashCode(), shardCount);
+    }
+
+    /**
+     * Runs an operation on a shard. The transactions it starts, and the repository calls it makes, go to this shard.
+     *
+     * @param shard  The index of the shard.
+     * @param action The operation to run.
+     * @return The result of the operation.
+     * @throws IllegalStateException if a transaction on another shard is in progress, since the operation would join it.
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive() && ShardContext.getCurrentShard() != shard) {
+            throw new IllegalStateException("Cannot run on shard " + shard + " within a transaction on shard "
+                    + ShardContext.getCurrentShard());
+        }
+        Integer previous = ShardContext.setCurrentShard(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.setCurrentShard(previous);
+        }
+    }
+
+    /**
+     * Runs an operation in a transaction on a shard, or within the transaction in progress on this shard.
+     *
+     * @param shard  The index of the shard.
+     * @param action The operation to run.
+     * @return The result of the operation.
+     */
+    public <T> T inTransaction(int shard, Supplier<T> action) {
+        return onShard(shard, () -> transactionTemplate.execute(status -> action.get()));
+    }
+
+    /**
+     * Runs an operation in a read-only transaction on a shard.
+     *
+     * @param shard  The index of the shard.
+     * @param action The operation to run.
+     * @return The result of the operation.
+     */
+    public <T> T inReadOnlyTransaction(int shard, Supplier<T> action) {
+        return onShard(shard, () -> readOnlyTransactionTemplate.execute(status -> action.get()));
+    }
+
+    /**
+     * Groups values by shard, keeping their order within each shard.
+     *
+     * @param values  The values to group.
+     * @param shardOf The function giving the shard of a value.
+     * @return The values of each shard that has some, by ascending shard index.
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> values, Function<T, Integer> shardOf) {
+        Map<Integer, List<T>> byShard = new TreeMap<>();
+        for (T value : values) {
+            byShard.computeIfAbsent(shardOf.apply(value), shard -> new ArrayList<>()).add(value);
+        }
+        return byShard;
+    }
+}
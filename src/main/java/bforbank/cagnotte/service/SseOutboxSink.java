@@ -0,0 +1,93 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Sink pushing the change events to the Server-Sent Events subscribers of GET /events/stream, named sse.
+ * Each event is sent with its offset as the SSE id, so a client reconnecting with the Last-Event-ID header
+ * first receives the events it missed, from the latest cagnotte.outbox.sse.capacity events retained in memory.
+ * Events are sent by the relay thread, so a subscriber that cannot keep up slows down the publication.
+ */
+@Component
+public class SseOutboxSink implements OutboxSink {
+
+    // Name of the SSE events
+    public static final String EVENT_NAME = "transaction";
+
+    private final ChangeEventBuffer buffer;
+    private final int capacity;
+    private final long timeoutMs;
+    // Changed under the lock of buffer, so a subscriber gets each event exactly once, from the replay or from a publication
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for SseOutboxSink.
+     *
+     * @param capacity The number of events retained for the reconnecting subscribers.
+     * @param timeout  The time after which a subscription is closed; the client then reconnects.
+     */
+    public SseOutboxSink(@Value("${cagnotte.outbox.sse.capacity:10000}") int capacity,
+                         @Value("${cagnotte.outbox.sse.timeout:30m}") Duration timeout) {
+        this.buffer = new ChangeEventBuffer(capacity);
+        this.capacity = capacity;
+        this.timeoutMs = timeout.toMillis();
+    }
+
+    @Override
+    public String getName() {
+        return "sse";
+    }
+
+    @Override
+    public void publish(List<ChangeEvent> events) {
+        synchronized (buffer) {
+            buffer.append(events);
+            subscribers.removeIf(subscriber -> !send(subscriber, events));
+        }
+    }
+
+    /**
+     * Subscribes to the events, starting with the retained events following an offset.
+     *
+     * @param after The offset of the last event received, 0 to receive the retained events, or null for new events only.
+     * @return The emitter sending the events to the subscriber.
+     */
+    public SseEmitter subscribe(Long after) {
+        SseEmitter subscriber = new SseEmitter(timeoutMs);
+        Runnable unsubscribe = () -> subscribers.remove(subscriber);
+        subscriber.onCompletion(unsubscribe);
+        subscriber.onTimeout(unsubscribe);
+        subscriber.onError(e -> unsubscribe.run());
+        synchronized (buffer) {
+            if (after == null || send(subscriber, buffer.read(after, capacity))) {
+                subscribers.add(subscriber);
+            }
+        }
+        return subscriber;
+    }
+
+    private static boolean send(SseEmitter subscriber, List<ChangeEvent> events) {
+        try {
+            for (ChangeEvent event : events) {
+                subscriber.send(SseEmitter.event()
+                        .id(Long.toString(event.getOffset()))
+                        .name(EVENT_NAME)
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // The subscriber is gone: it reconnects with the last id it received
+            subscriber.completeWithError(e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.OutboxEvent;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.OutboxEventRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Service class writing a batch of transactions in a single database transaction.
+ * It is the only write path for transactions: single deposits, group commits and bulk imports all go through it.
+ * With sharding, the transactions of each shard are written in a database transaction on that shard.
+ * When the outbox is enabled, an outbox entry is inserted with each transaction, in the same database transaction.
+ * The credited clients are reported to the BalanceNotifier once the batch is committed.
+ */
+@Service
+public class TransactionBatchWriter {
+
+    private final TransactionRepository transactionRepository;
+    private final ClientRepository clientRepository;
+    private final ClientCache clientCache;
+    private final LedgerService ledgerService;
+    private final ShardRouter shardRouter;
+    private final OutboxEventRepository outboxRepository;
+    private final BalanceNotifier balanceNotifier;
+    private final boolean outboxEnabled;
+
+    /**
+     * Exception thrown when the transactions of some shards of a batch are committed and the ones of other shards are not.
+     * The committed transactions must not be written again: only the failed ones can be retried.
+     */
+    public static class PartialWriteException extends RuntimeException {
+        // Ids of the clients of the committed shards that were not found
+        private final Set<Integer> unknownClients;
+        // Transactions of the shards that failed, not written
+        private final List<Transaction> failedTransactions;
+
+        /**
+         * Constructor for PartialWriteException.
+         *
+         * @param unknownClients     The ids of the clients of the committed shards that were not found.
+         * @param failedTransactions The transactions of the shards that failed.
+         * @param cause              The failure of the first shard that failed.
+         */
+        public PartialWriteException(Set<Integer> unknownClients, List<Transaction> failedTransactions, RuntimeException cause) {
+            super(failedTransactions.size() + " transactions of the failed shards were not written", cause);
+            this.unknownClients = unknownClients;
+            this.failedTransactions = failedTransactions;
+        }
+
+        /**
+         * Gets the ids of the clients of the committed shards that were not found. Their transactions are not written.
+         *
+         * @return The ids of the unknown clients.
+         */
+        public Set<Integer> getUnknownClients() {
+            return unknownClients;
+        }
+
+        /**
+         * Gets the transactions of the shards that failed. They are not written, and can be written again.
+         *
+         * @return The transactions that were not written.
+         */
+        public List<Transaction> getFailedTransactions() {
+            return failedTransactions;
+        }
+    }
+
+    /**
+     * Constructor for TransactionBatchWriter.
+     *
+     * @param transactionRepository The repository to handle transaction related database operations.
+     * @param clientRepository The repository to handle client related database operations.
+     * @param clientCache The client cache, from which credited clients are evicted once the batch is committed.
+     * @param ledgerService The ledger service, telling whether transactions are only appended.
+     * @param shardRouter The router writing the transactions of each client on its shard.
+     * @param outboxRepository The repository of the outbox, in which the written transactions are published.
+     * @param balanceNotifier The notifier pushing the new balances of the credited clients to their subscribers.
+     * @param outboxEnabled Whether an outbox entry is inserted with each transaction.
+     */
+    public TransactionBatchWriter(TransactionRepository transactionRepository, ClientRepository clientRepository,
+                                  ClientCache clientCache, LedgerService ledgerService, ShardRouter shardRouter,
+                                  OutboxEventRepository outboxRepository, BalanceNotifier balanceNotifier,
+                                  @Value("${cagnotte.outbox.enabled:false}") boolean outboxEnabled) {
+        this.transactionRepository = transactionRepository;
+        this.clientRepository = clientRepository;
+        this.clientCache = clientCache;
+        this.ledgerService = ledgerService;
+        this.shardRouter = shardRouter;
+        this.outboxRepository = outboxRepository;
+        this.balanceNotifier = balanceNotifier;
+        this.outboxEnabled = outboxEnabled;
+    }
+
+    /**
+     * Writes a batch of transactions.
+     * The amounts are summed per client, in cents on a primitive long, and each client's cagnotte and transaction count
+     * are updated with one atomic UPDATE, in ascending client id order so that concurrent batches always lock rows in the same order.
+     * The transactions of existing clients are then inserted; their ids are set on the given objects.
+     * The credited clients are evicted from the client cache once the database transaction is committed.
+     * In the ledger mode, the transactions of existing clients are only inserted, in the ledger tail.
+     * The transactions without a creation time are stamped with the time of the batch.
+     * With sharding, each shard is written in its own database transaction. When a shard fails, the other shards
+     * are still written, and a PartialWriteException tells which transactions were not written if some shards were.
+     * The ids of the transactions that were not written are reset, so that they can be written again.
+     *
+     * @param transactions The transactions to write. Their clientId and amount cannot be null.
+     * @return The ids of the clients that were not found. Their transactions are not written.
+     * @throws PartialWriteException if some shards are committed and others failed.
+     * @throws RuntimeException the failure of the first shard, if no shard is committed.
+     */
+    public Set<Integer> write(List<Transaction> transactions) {
+        Instant now = Instant.now();
+        for (Transaction transaction : transactions) {
+            if (transaction.getCreatedAt() == null) {
+                transaction.setCreatedAt(now);
+            }
+        }
+        Set<Integer> unknownClients = new HashSet<>();
+        List<Transaction> failedTransactions = new ArrayList<>();
+        RuntimeException failure = null;
+        boolean committed = false;
+        for (Map.Entry<Integer, List<Transaction>> shard : shardRouter.groupByShard(transactions,
+                transaction -> shardRouter.shardOf(transaction.getClientId())).entrySet()) {
+            try {
+                unknownClients.addAll(shardRouter.inTransaction(shard.getKey(), () -> writeShard(shard.getValue())));
+                committed = true;
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+                // The ids allocated in the rolled back database transaction are not used
+                shard.getValue().forEach(transaction -> transaction.setId(null));
+                failedTransactions.addAll(shard.getValue());
+            }
+        }
+        if (failure != null) {
+            throw committed ? new PartialWriteException(unknownClients, failedTransactions, failure) : failure;
+        }
+        return unknownClients;
+    }
+
+    /**
+     * Writes the transactions of a shard, in the database transaction in progress on this shard.
+     */
+    private Set<Integer> writeShard(List<Transaction> transactions) {
+        if (ledgerService.isEnabled()) {
+            return append(transactions);
+        }
+        List<Transaction> byClient = new ArrayList<>(transactions);
+        byClient.sort(Comparator.comparing(Transaction::getClientId));
+        List<Integer> creditedClients = new ArrayList<>();
+        Set<Integer> unknownClients = new HashSet<>();
+        int start = 0;
+        while (start < byClient.size()) {
+            Integer clientId = byClient.get(start).getClientId();
+            long amount = 0;
+            int end = start;
+            while (end < byClient.size() && clientId.equals(byClient.get(end).getClientId())) {
+                amount = Math.addExact(amount, byClient.get(end).getAmount().toCents());
+                end++;
+            }
+            int updatedRows = clientRepository.applyTransactions(clientId, amount, end - start);
+            System.out.println("APPLY " + clientId + " " + amount + " " + (end - start) + " -> " + updatedRows + " " + Thread.currentThread().getName());
+            if (updatedRows == 0) {
+                unknownClients.add(clientId);
+            } else {
+                creditedClients.add(clientId);
+            }
+            start = end;
+        }
+        List<Transaction> accepted = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (!unknownClients.contains(transaction.getClientId())) {
+                transaction.setSnapshotId(Transaction.APPLIED_ON_WRITE);
+                accepted.add(transaction);
+            }
+        }
+        save(accepted);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                System.out.println("COMMITTED " + creditedClients);
+                creditedClients.forEach(clientCache::evict);
+                balanceNotifier.clientsChanged(creditedClients);
+            }
+        });
+        return unknownClients;
+    }
+
+    /**
+     * Appends a batch of transactions to the ledger tail.
+     * Clients are checked through the client cache and no client row is updated or locked.
+     */
+    private Set<Integer> append(List<Transaction> transactions) {
+        Set<Integer> unknownClients = new HashSet<>();
+        Set<Integer> knownClients = new HashSet<>();
+        List<Transaction> accepted = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            Integer clientId = transaction.getClientId();
+            if (!knownClients.contains(clientId) && !unknownClients.contains(clientId)) {
+                (clientCache.findById(clientId).isPresent() ? knownClients : unknownClients).add(clientId);
+            }
+            if (knownClients.contains(clientId)) {
+                transaction.setSnapshotId(null);
+                accepted.add(transaction);
+            }
+        }
+        save(accepted);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                balanceNotifier.clientsChanged(knownClients);
+            }
+        });
+        return unknownClients;
+    }
+
+    /**
+     * Inserts the accepted transactions, and their outbox entries when the outbox is enabled.
+     */
+    private void save(List<Transaction> accepted) {
+        transactionRepository.saveAll(accepted);
+        if (outboxEnabled) {
+            outboxRepository.saveAll(accepted.stream().map(OutboxEvent::new).toList());
+        }
+    }
+}
\ No newline at end of file
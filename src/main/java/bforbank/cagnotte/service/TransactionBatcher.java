@@ -0,0 +1,202 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.exception.NotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit pipeline for transactions.
+ * When enabled, incoming transactions are put in a bounded queue and a single writer thread commits them in batches:
+ * one multi-row INSERT and one aggregated cagnotte UPDATE per client per batch.
+ * Each caller gets a future that is completed once its batch has been committed.
+ * The queue size, the batch sizes and the commit times are published as cagnotte.group-commit.* meters.
+ */
+@Component
+public class TransactionBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionBatcher.class);
+
+    private final TransactionBatchWriter batchWriter;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<PendingTransaction> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer commitTimer;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    /**
+     * Constructor for TransactionBatcher.
+     *
+     * @param batchWriter   The writer used to commit each batch.
+     * @param meterRegistry The registry the group-commit metrics are published to.
+     * @param enabled       Whether the group-commit mode is enabled.
+     * @param batchSize     The maximum number of transactions committed in one batch.
+     * @param maxLingerMs   The maximum time, in milliseconds, a batch waits for more transactions before being committed.
+     * @param queueCapacity The maximum number of transactions waiting to be committed.
+     */
+    public TransactionBatcher(TransactionBatchWriter batchWriter, MeterRegistry meterRegistry,
+                              @Value("${cagnotte.transaction.group-commit.enabled:false}") boolean enabled,
+                              @Value("${cagnotte.transaction.group-commit.batch-size:100}") int batchSize,
+                              @Value("${cagnotte.transaction.group-commit.max-linger-ms:5}") long maxLingerMs,
+                              @Value("${cagnotte.transaction.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.batchWriter = batchWriter;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        meterRegistry.gaugeCollectionSize("cagnotte.group-commit.queue.size", List.of(), queue);
+        this.batchSizes = DistributionSummary.builder("cagnotte.group-commit.batch.size").publishPercentileHistogram().register(meterRegistry);
+        this.commitTimer = Timer.builder("cagnotte.group-commit.commit").publishPercentileHistogram().register(meterRegistry);
+    }
+
+    /**
+     * Starts the writer thread if the group-commit mode is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "transaction-group-commit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread once the transactions already queued have been committed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join();
+    }
+
+    /**
+     * Indicates whether the group-commit mode is enabled.
+     *
+     * @return true if transactions should be submitted to this batcher, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a transaction for the next batch. Blocks while the queue is full.
+     *
+     * @param transaction The transaction to commit.
+     * @return A future completed with the saved transaction once its batch is committed,
+     *         or completed exceptionally if the client was not found or the batch failed.
+     */
+    public CompletableFuture<Transaction> submit(Transaction transaction) {
+        PendingTransaction pending = new PendingTransaction(transaction, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(e);
+        }
+        return pending.future();
+    }
+
+    private void run() {
+        List<PendingTransaction> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransaction first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < batchSize) {
+                    PendingTransaction next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingTransaction> batch) {
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (PendingTransaction pending : batch) {
+            transactions.add(pending.transaction());
+        }
+        batchSizes.record(batch.size());
+        try {
+            complete(batch, commitTimer.record(() -> batchWriter.write(transactions)));
+        } catch (TransactionBatchWriter.PartialWriteException e) {
+            // The shards that were committed must not be written again: only retry the transactions of the failed ones
+            Set<Transaction> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            failed.addAll(e.getFailedTransactions());
+            List<PendingTransaction> committed = new ArrayList<>(batch.size() - failed.size());
+            List<PendingTransaction> retried = new ArrayList<>(failed.size());
+            for (PendingTransaction pending : batch) {
+                (failed.contains(pending.transaction()) ? retried : committed).add(pending);
+            }
+            complete(committed, e.getUnknownClients());
+            log.warn("Group commit of {} transactions failed on some shards, retrying {} individually",
+                    batch.size(), retried.size(), e);
+            retryIndividually(retried);
+        } catch (RuntimeException e) {
+            // One bad transaction must not fail the whole batch: retry them one by one
+            log.warn("Group commit of {} transactions failed, retrying individually", batch.size(), e);
+            retryIndividually(batch);
+        }
+    }
+
+    private void retryIndividually(List<PendingTransaction> batch) {
+        for (PendingTransaction pending : batch) {
+            try {
+                complete(List.of(pending), batchWriter.write(List.of(pending.transaction())));
+            } catch (RuntimeException single) {
+                pending.future().completeExceptionally(single);
+            }
+        }
+    }
+
+    private static void complete(List<PendingTransaction> batch, Set<Integer> unknownClients) {
+        for (PendingTransaction pending : batch) {
+            if (unknownClients.contains(pending.transaction().getClientId())) {
+                pending.future().completeExceptionally(NotFoundException.CLIENT_NOT_FOUND);
+            } else {
+                pending.future().complete(pending.transaction());
+            }
+        }
+    }
+
+    private record PendingTransaction(Transaction transaction, CompletableFuture<Transaction> future) {
+    }
+}
@@ -0,0 +1,194 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.BulkImportResult;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service class for importing transactions in bulk.
+ * The input is read line by line and written in chunks, so memory use does not depend on the size of the input.
+ */
+@Service
+public class TransactionImportService {
+
+    /**
+     * Supported input formats.
+     */
+    public enum Format {
+        // One JSON object per line: {"clientid": 1, "amount": 10.5}
+        NDJSON,
+        // One "clientid,amount" pair per line, with an optional header line
+        CSV
+    }
+
+    // Reason reported for the lines of a chunk that could not be written; the cause is only logged
+    static final String WRITE_FAILED = "Write failed, line not imported";
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionImportService.class);
+
+    private final TransactionBatchWriter batchWriter;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    /**
+     * Constructor for TransactionImportService.
+     *
+     * @param batchWriter       The writer committing each chunk of transactions.
+     * @param objectMapper      The mapper used to parse NDJSON lines.
+     * @param chunkSize         The number of transactions written per database transaction.
+     * @param maxReportedErrors The maximum number of rejected lines reported individually in the result.
+     */
+    public TransactionImportService(TransactionBatchWriter batchWriter, ObjectMapper objectMapper,
+                                    @Value("${cagnotte.transaction.bulk.chunk-size:500}") int chunkSize,
+                                    @Value("${cagnotte.transaction.bulk.max-reported-errors:1000}") int maxReportedErrors) {
+        this.batchWriter = batchWriter;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Imports the transactions read from the given input.
+     * Each line is validated like a call to makeTransaction: the clientid and the amount cannot be null,
+     * and the client must exist. Invalid lines are rejected, the other ones are written.
+     * The lines of a chunk that cannot be written, for instance after a deadlock or a timeout, are rejected
+     * with a generic reason and can be submitted again. With sharding, each shard of a chunk is written on its own,
+     * so only the lines of a shard that failed are rejected, and the rejected lines were not written.
+     *
+     * @param input  The input to read, one transaction per line.
+     * @param format The format of the input.
+     * @return The number of accepted and rejected lines, and the reason each line was rejected.
+     * @throws IOException if the input cannot be read.
+     */
+    public BulkImportResult importTransactions(Reader input, Format format) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        List<Transaction> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLines = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(input);
+        String text;
+        long line = 0;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank() || line == 1 && format == Format.CSV && isCsvHeader(text)) {
+                continue;
+            }
+            Transaction transaction;
+            try {
+                transaction = format == Format.NDJSON ? parseJson(text) : parseCsv(text);
+            } catch (InvalidRequestException e) {
+                result.reject(line, e.getMessage(), maxReportedErrors);
+                continue;
+            }
+            chunk.add(transaction);
+            chunkLines.add(line);
+            if (chunk.size() == chunkSize) {
+                write(chunk, chunkLines, result);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            write(chunk, chunkLines, result);
+        }
+        return result;
+    }
+
+    private void write(List<Transaction> chunk, List<Long> chunkLines, BulkImportResult result) {
+        Set<Integer> unknownClients;
+        Set<Transaction> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            unknownClients = batchWriter.write(chunk);
+        } catch (TransactionBatchWriter.PartialWriteException e) {
+            // The lines of the committed shards are written: only the ones of the failed shards are rejected
+            log.warn("Writing {} of a chunk of {} imported transactions failed", e.getFailedTransactions().size(), chunk.size(), e);
+            unknownClients = e.getUnknownClients();
+            failed.addAll(e.getFailedTransactions());
+        } catch (RuntimeException e) {
+            log.warn("Writing a chunk of {} imported transactions failed", chunk.size(), e);
+            unknownClients = Set.of();
+            failed.addAll(chunk);
+        }
+        int accepted = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            if (failed.contains(chunk.get(i))) {
+                result.reject(chunkLines.get(i), WRITE_FAILED, maxReportedErrors);
+            } else if (unknownClients.contains(chunk.get(i).getClientId())) {
+                result.reject(chunkLines.get(i), "Client not found", maxReportedErrors);
+            } else {
+                accepted++;
+            }
+        }
+        result.accept(accepted);
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    private Transaction parseJson(String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            throw InvalidRequestException.MALFORMED_LINE;
+        }
+        if (!node.isObject()) {
+            throw InvalidRequestException.MALFORMED_LINE;
+        }
+        JsonNode clientid = node.hasNonNull("clientid") ? node.get("clientid") : node.get("clientId");
+        JsonNode amount = node.get("amount");
+        if (clientid != null && !clientid.isNull() && !clientid.canConvertToInt()
+                || amount != null && !amount.isNull() && !amount.isNumber()) {
+            throw InvalidRequestException.MALFORMED_LINE;
+        }
+        return transaction(clientid == null || clientid.isNull() ? null : clientid.intValue(),
+                amount == null || amount.isNull() ? null : Money.of(amount.decimalValue()));
+    }
+
+    private Transaction parseCsv(String text) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 2) {
+            throw InvalidRequestException.MALFORMED_LINE;
+        }
+        try {
+            String clientid = fields[0].trim();
+            String amount = fields[1].trim();
+            return transaction(clientid.isEmpty() ? null : Integer.valueOf(clientid),
+                    amount.isEmpty() ? null : Money.of(new BigDecimal(amount)));
+        } catch (NumberFormatException e) {
+            throw InvalidRequestException.MALFORMED_LINE;
+        }
+    }
+
+    private static boolean isCsvHeader(String text) {
+        return text.trim().toLowerCase().startsWith("clientid");
+    }
+
+    private static Transaction transaction(Integer clientid, Money amount) {
+        if (clientid == null) {
+            throw InvalidRequestException.CLIENTID_NULL;
+        }
+        if (amount == null) {
+            throw InvalidRequestException.AMOUNT_NULL;
+        }
+        Transaction transaction = new Transaction();
+        transaction.setClientId(clientid);
+        transaction.setAmount(amount);
+        return transaction;
+    }
+}
@@ -0,0 +1,322 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.exception.ServiceUnavailableException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of transactions, kept in a memory-mapped file used as a ring of fixed-size records.
+ * Each record holds a sequence number, a client id, an amount in cents and a CRC32 of these fields,
+ * so a record torn by a crash is detected and ignored.
+ * Appends only write to the mapped memory; a flusher thread forces the written records to disk and acknowledges them,
+ * so all the records appended while a force is in progress share the next one.
+ * A slot is reused only once its record has been released, that is written to the database.
+ * The capacity of the ring is the size of the file: a new capacity is only applied when no record is pending,
+ * since the pending records are laid out for the capacity they were written with.
+ */
+public class TransactionJournal implements Closeable {
+
+    // Size of a record: sequence (8 bytes), client id (4 bytes), amount in cents (8 bytes) and CRC32 (4 bytes)
+    public static final int RECORD_SIZE = 24;
+
+    private final FileChannel channel;
+    // Capacity requested, applied by recover when no record is pending
+    private final int requestedCapacity;
+    // Mapping and capacity of the ring, only replaced by recover before any append
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    // Acknowledgements waiting for the next force, in sequence order
+    private final Queue<PendingRecord> pending = new ArrayDeque<>();
+    private final Thread flusherThread;
+    // All the sequences below are guarded by lock
+    private long nextSequence = 1;
+    private long writtenSequence;
+    private long flushedSequence;
+    private long releasedSequence;
+    private boolean running = true;
+
+    /**
+     * Record of the journal.
+     *
+     * @param sequence    The sequence number of the record, starting at 1.
+     * @param clientId    The id of the client of the transaction.
+     * @param amountCents The amount of the transaction, in cents.
+     */
+    public record JournalRecord(long sequence, int clientId, long amountCents) {
+    }
+
+    private record PendingRecord(long sequence, CompletableFuture<Long> acknowledged) {
+    }
+
+    /**
+     * Opens a journal file, creating it if needed.
+     * The file is mapped with its current size, or with room for the given number of records if it is new.
+     * No record can be appended before recover has been called.
+     *
+     * @param path     The path of the journal file.
+     * @param capacity The minimum number of records the journal can hold before they are released.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public TransactionJournal(Path path, int capacity) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.requestedCapacity = capacity;
+        long records = channel.size() / RECORD_SIZE;
+        map(records > 0 ? (int) records : capacity);
+        this.flusherThread = new Thread(this::flush, "transaction-journal-flush");
+        this.flusherThread.setDaemon(true);
+    }
+
+    /**
+     * Scans the journal for the records that are not written to the database yet, and starts accepting appends.
+     * Records that are torn or already written, with a sequence up to the checkpoint, are ignored.
+     * The recovered records are returned by read, and new records are numbered after them.
+     * If no record is pending, the file is grown to the requested capacity;
+     * otherwise it keeps its capacity, and the requested one is applied at the next recovery.
+     *
+     * @param checkpoint The sequence of the last record written to the database.
+     * @return The recovered records, in sequence order.
+     * @throws IOException if the file cannot be grown to the requested capacity.
+     */
+    public List<JournalRecord> recover(long checkpoint) throws IOException {
+        List<JournalRecord> recovered = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            JournalRecord record = readSlot(slot);
+            if (record != null && record.sequence() > checkpoint) {
+                recovered.add(record);
+            }
+        }
+        recovered.sort(Comparator.comparingLong(JournalRecord::sequence));
+        long last = recovered.isEmpty() ? checkpoint : recovered.get(recovered.size() - 1).sequence();
+        lock.lock();
+        try {
+            if (recovered.isEmpty() && requestedCapacity > capacity) {
+                map(requestedCapacity);
+            }
+            releasedSequence = checkpoint;
+            writtenSequence = last;
+            flushedSequence = last;
+            nextSequence = last + 1;
+        } finally {
+            lock.unlock();
+        }
+        flusherThread.start();
+        return recovered;
+    }
+
+    /**
+     * Appends a record to the journal.
+     *
+     * @param clientId    The id of the client of the transaction.
+     * @param amountCents The amount of the transaction, in cents.
+     * @return A future completed with the sequence of the record once it is forced to disk.
+     * @throws ServiceUnavailableException if the journal is full of records not yet written to the database.
+     */
+    public CompletableFuture<Long> append(int clientId, long amountCents) {
+        CompletableFuture<Long> acknowledged = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("The journal is closed");
+            }
+            if (nextSequence - releasedSequence > capacity) {
+                throw ServiceUnavailableException.TRANSACTIONS_SATURATED;
+            }
+            long sequence = nextSequence++;
+            writeSlot(sequence, clientId, amountCents);
+            writtenSequence = sequence;
+            pending.add(new PendingRecord(sequence, acknowledged));
+            written.signal();
+        } finally {
+            lock.unlock();
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Reads the acknowledged records following a sequence.
+     *
+     * @param after The sequence after which records are read.
+     * @param max   The maximum number of records to read.
+     * @return The records, in sequence order. Torn records, which were never acknowledged, are skipped.
+     */
+    public List<JournalRecord> read(long after, int max) {
+        long last;
+        lock.lock();
+        try {
+            last = Math.min(flushedSequence, after + max);
+        } finally {
+            lock.unlock();
+        }
+        List<JournalRecord> records = new ArrayList<>((int) Math.max(0, last - after));
+        for (long sequence = after + 1; sequence <= last; sequence++) {
+            JournalRecord record = readSlot(slotOf(sequence));
+            if (record != null && record.sequence() == sequence) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Releases the records up to a sequence, once they are written to the database, so that their slots can be reused.
+     *
+     * @param sequence The sequence of the last record written to the database.
+     */
+    public void release(long sequence) {
+        lock.lock();
+        try {
+            releasedSequence = Math.max(releasedSequence, sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the sequence of the last record released.
+     *
+     * @return The sequence of the last record written to the database.
+     */
+    public long getReleasedSequence() {
+        lock.lock();
+        try {
+            return releasedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records not released yet.
+     *
+     * @return The number of records appended and not yet written to the database.
+     */
+    public long getPendingRecords() {
+        lock.lock();
+        try {
+            return writtenSequence - releasedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting appends, forces and acknowledges the records already appended, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            running = false;
+            written.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (flusherThread.isAlive()) {
+            try {
+                flusherThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        buffer.force();
+        channel.close();
+    }
+
+    private void map(int records) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) records * RECORD_SIZE);
+        capacity = records;
+        // Mapping grows the file: its new size must be on disk before records are acknowledged in it
+        channel.force(true);
+    }
+
+    private void flush() {
+        List<PendingRecord> acknowledged = new ArrayList<>();
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (running && writtenSequence == flushedSequence) {
+                    written.awaitUninterruptibly();
+                }
+                if (writtenSequence == flushedSequence) {
+                    return;
+                }
+                target = writtenSequence;
+            } finally {
+                lock.unlock();
+            }
+            buffer.force();
+            lock.lock();
+            try {
+                flushedSequence = target;
+                while (!pending.isEmpty() && pending.peek().sequence() <= target) {
+                    acknowledged.add(pending.poll());
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (PendingRecord record : acknowledged) {
+                record.acknowledged().complete(record.sequence());
+            }
+            acknowledged.clear();
+        }
+    }
+
+    private int slotOf(long sequence) {
+        return (int) ((sequence - 1) % capacity);
+    }
+
+    private void writeSlot(long sequence, int clientId, long amountCents) {
+        int offset = slotOf(sequence) * RECORD_SIZE;
+        buffer.putLong(offset, sequence);
+        buffer.putInt(offset + 8, clientId);
+        buffer.putLong(offset + 12, amountCents);
+        buffer.putInt(offset + 20, checksum(sequence, clientId, amountCents));
+    }
+
+    private JournalRecord readSlot(int slot) {
+        int offset = slot * RECORD_SIZE;
+        long sequence = buffer.getLong(offset);
+        int clientId = buffer.getInt(offset + 8);
+        long amountCents = buffer.getLong(offset + 12);
+        if (sequence <= 0 || buffer.getInt(offset + 20) != checksum(sequence, clientId, amountCents)) {
+            return null;
+        }
+        return new JournalRecord(sequence, clientId, amountCents);
+    }
+
+    private static int checksum(long sequence, int clientId, long amountCents) {
+        // The bytes are fed one by one, big-endian like the record, to avoid allocating a buffer per record
+        CRC32 crc = new CRC32();
+        update(crc, sequence, Long.BYTES);
+        update(crc, clientId, Integer.BYTES);
+        update(crc, amountCents, Long.BYTES);
+        return (int) crc.getValue();
+    }
+
+    private static void update(CRC32 crc, long value, int bytes) {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            crc.update((int) (value >>> shift));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Transaction;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class for the journal durability mode.
+ * When enabled, a transaction is acknowledged as soon as it is appended to the memory-mapped transaction journal
+ * and forced to disk, without waiting for the database. A drainer thread then writes the journal records
+ * to the database in batches, through the TransactionBatchWriter, and releases them.
+ * On startup, the records not yet written to the database are replayed before any new transaction is accepted.
+ * The drain times and the number of pending records are published as cagnotte.journal.* meters.
+ */
+@Service
+public class TransactionJournalService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionJournalService.class);
+
+    private final JournalDrainer drainer;
+    private final Timer drainTimer;
+    private final boolean enabled;
+    private final String file;
+    private final int capacity;
+    private final int drainBatchSize;
+    private final long drainIntervalMs;
+    private volatile TransactionJournal journal;
+    private ScheduledExecutorService drainExecutor;
+
+    /**
+     * Constructor for TransactionJournalService.
+     *
+     * @param drainer         The service writing journal records to the database.
+     * @param meterRegistry   The registry the journal metrics are published to.
+     * @param enabled         Whether the journal mode is enabled.
+     * @param file            The path of the journal file. It also names the checkpoint of the journal in the database.
+     * @param capacity        The number of records the journal can hold before they are written to the database.
+     * @param drainBatchSize  The maximum number of records written per database transaction.
+     * @param drainIntervalMs The time, in milliseconds, between two drains of the journal.
+     */
+    public TransactionJournalService(JournalDrainer drainer, MeterRegistry meterRegistry,
+                                     @Value("${cagnotte.transaction.journal.enabled:false}") boolean enabled,
+                                     @Value("${cagnotte.transaction.journal.file:journal/transactions.journal}") String file,
+                                     @Value("${cagnotte.transaction.journal.capacity:100000}") int capacity,
+                                     @Value("${cagnotte.transaction.journal.drain-batch-size:500}") int drainBatchSize,
+                                     @Value("${cagnotte.transaction.journal.drain-interval-ms:10}") long drainIntervalMs) {
+        this.drainer = drainer;
+        Gauge.builder("cagnotte.journal.pending", this, service -> service.journal == null ? 0 : service.journal.getPendingRecords())
+                .register(meterRegistry);
+        this.drainTimer = Timer.builder("cagnotte.journal.drain").publishPercentileHistogram().register(meterRegistry);
+        this.enabled = enabled;
+        this.file = file;
+        this.capacity = capacity;
+        this.drainBatchSize = drainBatchSize;
+        this.drainIntervalMs = drainIntervalMs;
+    }
+
+    /**
+     * Opens the journal, replays the records not yet written to the database and starts the drainer thread,
+     * if the journal mode is enabled.
+     *
+     * @throws IOException if the journal file cannot be opened.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = new TransactionJournal(Path.of(file), capacity);
+        int recovered = journal.recover(drainer.checkpoint(file)).size();
+        if (recovered > 0) {
+            log.info("Replaying {} transactions of journal {}", recovered, file);
+            drain();
+        }
+        drainExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-journal-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+        drainExecutor.scheduleWithFixedDelay(this::drainSafely, drainIntervalMs, drainIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the drainer thread, writes the remaining records to the database and closes the journal.
+     *
+     * @throws IOException if the journal file cannot be closed.
+     */
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (drainExecutor == null) {
+            return;
+        }
+        drainExecutor.shutdown();
+        drainExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        journal.close();
+        drainSafely();
+        drainExecutor = null;
+    }
+
+    /**
+     * Indicates whether the journal mode is enabled.
+     *
+     * @return true if transactions should be appended to the journal, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a transaction to the journal and waits until it is forced to disk.
+     * The transaction is written to the database later, so its id is not set.
+     *
+     * @param transaction The transaction to append. Its client must exist.
+     */
+    public void append(Transaction transaction) {
+        try {
+            journal.append(transaction.getClientId(), transaction.getAmount().toCents()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the records of the journal that are not yet in the database, in batches, and releases them.
+     *
+     * @return The number of records written.
+     */
+    public int drain() {
+        int drained = 0;
+        List<TransactionJournal.JournalRecord> records;
+        do {
+            records = journal.read(journal.getReleasedSequence(), drainBatchSize);
+            System.out.println("DRAIN after " + journal.getReleasedSequence() + " read " + records.size() + " pending " + journal.getPendingRecords() + " " + System.identityHashCode(journal));
+            if (records.isEmpty()) {
+                break;
+            }
+            List<TransactionJournal.JournalRecord> batch = records;
+            journal.release(drainTimer.record(() -> drainer.write(file, batch)));
+            drained += records.size();
+        } while (records.size() == drainBatchSize);
+        return drained;
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (Error e) {
+            System.out.println("DRAIN error " + e);
+            throw e;
+        } catch (RuntimeException e) {
+            // The records stay in the journal and are retried by the next drain
+            log.warn("Draining the transaction journal failed", e);
+        }
+    }
+}
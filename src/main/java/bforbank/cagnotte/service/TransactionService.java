@@ -1,12 +1,28 @@
 package bforbank.cagnotte.service;
 
 import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.LedgerBalance;
+import bforbank.cagnotte.entities.Money;
 import bforbank.cagnotte.entities.Transaction;
-import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.entities.TransactionPage;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.exception.ServiceUnavailableException;
 import bforbank.cagnotte.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service class for handling transaction related operations.
@@ -14,43 +30,150 @@ import java.util.List;
 @Service
 public class TransactionService {
 
+    // Minimum cagnotte, in cents, for the cagnotte to be available
+    private static final long MINIMUM_CAGNOTTE_CENTS = 1000;
+
+    // Maximum length of an idempotency key, the size of the idempotency_key column
+    private static final int MAXIMUM_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final TransactionRepository transactionRepository;
-    private final ClientRepository clientRepository;
+    private final ClientCache clientCache;
+    private final ClientService clientService;
+    private final TransactionBatchWriter batchWriter;
+    private final TransactionBatcher batcher;
+    private final LedgerService ledgerService;
+    private final TransactionJournalService journalService;
+    private final IdempotencyCache idempotencyCache;
+    private final ShardRouter shardRouter;
+    private final ReplicaRouter replicaRouter;
+    private final EntityManager entityManager;
+    private final int maxPageSize;
 
     /**
      * Constructor for TransactionService.
      *
      * @param transactionRepository The repository to handle transaction related database operations.
-     * @param clientRepository The repository to handle client related database operations.
+     * @param clientCache The cache in front of the client repository.
+     * @param clientService The service reading clients in batches.
+     * @param batchWriter The writer committing transactions to the database.
+     * @param batcher The group-commit pipeline used when the group-commit mode is enabled.
+     * @param ledgerService The ledger service, computing the balances in the ledger mode.
+     * @param journalService The transaction journal used when the journal mode is enabled.
+     * @param idempotencyCache The cache of the transactions made with an idempotency key.
+     * @param shardRouter The router sending the queries of each client to its shard.
+     * @param replicaRouter The router sending the reads of transactions to the read replicas.
+     * @param entityManager The entity manager, used to detach streamed transactions.
+     * @param maxPageSize The maximum number of transactions returned in one page.
      */
-    public TransactionService(TransactionRepository transactionRepository, ClientRepository clientRepository) {
+    public TransactionService(TransactionRepository transactionRepository, ClientCache clientCache, ClientService clientService,
+                              TransactionBatchWriter batchWriter, TransactionBatcher batcher, LedgerService ledgerService,
+                              TransactionJournalService journalService, IdempotencyCache idempotencyCache,
+                              ShardRouter shardRouter, ReplicaRouter replicaRouter, EntityManager entityManager,
+                              @Value("${cagnotte.transaction.max-page-size:1000}") int maxPageSize) {
         this.transactionRepository = transactionRepository;
-        this.clientRepository = clientRepository;
+        this.clientCache = clientCache;
+        this.clientService = clientService;
+        this.batchWriter = batchWriter;
+        this.batcher = batcher;
+        this.ledgerService = ledgerService;
+        this.journalService = journalService;
+        this.idempotencyCache = idempotencyCache;
+        this.shardRouter = shardRouter;
+        this.replicaRouter = replicaRouter;
+        this.entityManager = entityManager;
+        this.maxPageSize = maxPageSize;
     }
 
     /**
      * Makes a transaction for a client.
+     * The client's cagnotte is credited with an atomic UPDATE and the transaction is inserted
+     * in the same database transaction, so no deposit is lost under concurrent calls.
+     * In group-commit mode, the call waits until the batch containing the transaction is committed.
+     * In journal mode, the call only waits until the transaction is forced to the journal file: it is written to the
+     * database shortly after, and the returned transaction has no id.
      *
      * @param clientid The id of the client making the transaction. Cannot be null.
      * @param amount The amount of the transaction. Cannot be null.
      * @return The created Transaction object.
-     * @throws IllegalArgumentException if the amount is null.
-     * @throws RuntimeException if a client with the provided id is not found.
+     * @throws InvalidRequestException if the amount is null.
+     * @throws NotFoundException if a client with the provided id is not found.
+     * @throws ServiceUnavailableException if the journal is full of transactions not yet written to the database.
      */
-    public Transaction makeTransaction(Integer clientid, Float amount) {
+    public Transaction makeTransaction(Integer clientid, Money amount) {
+        return makeTransaction(clientid, amount, null);
+    }
+
+    /**
+     * Makes a transaction for a client, at most once per idempotency key of the client.
+     * Keys are scoped to the client: the same key used by another client makes an independent transaction.
+     * A request retried with the same key gets the transaction made by the first one: it is read from the idempotency cache,
+     * or, once evicted from it, found through the unique (client_id, idempotency_key) constraint when inserting the retry fails.
+     * With sharding, the constraint is checked on the shard of the client, which holds all its transactions.
+     * Neither the transaction nor the cagnotte is written twice.
+     * In journal mode, the key is not written to the database and retries are only recognized while the key is cached.
+     *
+     * @param clientid The id of the client making the transaction. Cannot be null.
+     * @param amount The amount of the transaction. Cannot be null.
+     * @param idempotencyKey The idempotency key of the request, or null to make the transaction unconditionally.
+     * @return The created Transaction object, or the one created by the first request with the same key.
+     * @throws InvalidRequestException if the amount is null or the idempotency key is blank or too long.
+     * @throws NotFoundException if a client with the provided id is not found.
+     * @throws ConflictException if the idempotency key was used by the client for a transaction with a different amount.
+     * @throws ServiceUnavailableException if the journal is full of transactions not yet written to the database.
+     */
+    public Transaction makeTransaction(Integer clientid, Money amount, String idempotencyKey) {
         if (clientid == null) {
-            throw new IllegalArgumentException("Clientid cannot be null");
+            throw InvalidRequestException.CLIENTID_NULL;
         }
         if (amount == null) {
-            throw new IllegalArgumentException("Amount cannot be null");
+            throw InvalidRequestException.AMOUNT_NULL;
         }
-        Client client = clientRepository.findById(clientid).orElseThrow(() -> new RuntimeException("Client not found"));
-        client.setCagnotte(client.getCagnotte() + amount);
-        clientRepository.save(client);
         Transaction transaction = new Transaction();
         transaction.setClientId(clientid);
         transaction.setAmount(amount);
-        return transactionRepository.save(transaction);
+        if (idempotencyKey == null) {
+            return write(transaction);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAXIMUM_IDEMPOTENCY_KEY_LENGTH) {
+            throw InvalidRequestException.IDEMPOTENCY_KEY_INVALID;
+        }
+        Transaction original = idempotencyCache.find(clientid, idempotencyKey).orElse(null);
+        if (original == null) {
+            transaction.setIdempotencyKey(journalService.isEnabled() ? null : idempotencyKey);
+            try {
+                original = write(transaction);
+            } catch (DataIntegrityViolationException e) {
+                original = shardRouter.onShard(shardRouter.shardOf(clientid),
+                        () -> transactionRepository.findByClientIdAndIdempotencyKey(clientid, idempotencyKey)).orElseThrow(() -> e);
+            }
+            idempotencyCache.put(clientid, idempotencyKey, original);
+        }
+        if (!original.getAmount().equals(amount)) {
+            throw ConflictException.IDEMPOTENCY_KEY_REUSED;
+        }
+        return original;
+    }
+
+    private Transaction write(Transaction transaction) {
+        if (journalService.isEnabled()) {
+            checkClientExists(transaction.getClientId());
+            journalService.append(transaction);
+            return transaction;
+        }
+        if (batcher.isEnabled()) {
+            try {
+                return batcher.submit(transaction).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        if (!batchWriter.write(List.of(transaction)).isEmpty()) {
+            throw NotFoundException.CLIENT_NOT_FOUND;
+        }
+        return transaction;
     }
 
     /**
@@ -58,29 +181,125 @@ public class TransactionService {
      *
      * @param clientid The id of the client whose transactions are to be retrieved. Cannot be null.
      * @return A list of Transaction objects.
-     * @throws RuntimeException if a client with the provided id is not found.
+     * @throws NotFoundException if a client with the provided id is not found.
      */
     public List<Transaction> getTransactions(Integer clientid) {
         if (clientid == null) {
-            throw new IllegalArgumentException("Clientid cannot be null");
+            throw InvalidRequestException.CLIENTID_NULL;
+        }
+        clientCache.findById(clientid).orElseThrow(() -> NotFoundException.CLIENT_NOT_FOUND);
+        return replicaRouter.read(() -> shardRouter.onShard(shardRouter.shardOf(clientid),
+                () -> transactionRepository.findByClientId(clientid)));
+    }
+
+    /**
+     * Retrieves a page of the transactions of a client, ordered by id.
+     * The page starts after the given cursor, so the cost of a page does not depend on its position in the history.
+     *
+     * @param clientid The id of the client whose transactions are to be retrieved. Cannot be null.
+     * @param after The id of the last transaction of the previous page, or null to get the first page.
+     * @param limit The maximum number of transactions in the page. Must be positive; capped to the configured maximum page size.
+     * @return The page of transactions, with the cursor of the next page.
+     * @throws InvalidRequestException if the clientid is null or the limit is not positive.
+     * @throws NotFoundException if a client with the provided id is not found.
+     */
+    public TransactionPage getTransactions(Integer clientid, Integer after, int limit) {
+        if (limit <= 0) {
+            throw InvalidRequestException.LIMIT_NOT_POSITIVE;
+        }
+        checkClientExists(clientid);
+        int size = Math.min(limit, maxPageSize);
+        List<Transaction> transactions = replicaRouter.read(() -> shardRouter.onShard(shardRouter.shardOf(clientid),
+                () -> transactionRepository.findByClientIdAndIdGreaterThanOrderByIdAsc(
+                        clientid, after == null ? 0 : after, Limit.of(size))));
+        Integer next = transactions.size() == size ? transactions.get(size - 1).getId() : null;
+        return new TransactionPage(transactions, next);
+    }
+
+    /**
+     * Streams all the transactions of a client, ordered by id, to a consumer.
+     * Transactions are read from a forward-only result set and detached once consumed,
+     * so memory use does not depend on the size of the history.
+     * The client is not checked: call checkClientExists first.
+     * The transactions are read in a read-only database transaction on the shard of the client, from a read replica if possible.
+     *
+     * @param clientid The id of the client whose transactions are to be retrieved.
+     * @param consumer The consumer receiving each transaction.
+     */
+    public void streamTransactions(Integer clientid, Consumer<Transaction> consumer) {
+        replicaRouter.read(() -> shardRouter.inReadOnlyTransaction(shardRouter.shardOf(clientid), () -> {
+            try (Stream<Transaction> transactions = transactionRepository.streamByClientId(clientid)) {
+                transactions.forEach(transaction -> {
+                    consumer.accept(transaction);
+                    entityManager.detach(transaction);
+                });
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Checks that a client exists.
+     *
+     * @param clientid The id of the client to check. Cannot be null.
+     * @throws InvalidRequestException if the clientid is null.
+     * @throws NotFoundException if a client with the provided id is not found.
+     */
+    public void checkClientExists(Integer clientid) {
+        if (clientid == null) {
+            throw InvalidRequestException.CLIENTID_NULL;
+        }
+        if (clientCache.findById(clientid).isEmpty()) {
+            throw NotFoundException.CLIENT_NOT_FOUND;
         }
-        clientRepository.findById(clientid).orElseThrow(() -> new RuntimeException("Client not found"));
-        return  transactionRepository.findByClientId(clientid);
     }
 
     /**
      * Checks if a client's cagnotte is available.
+     * The number of transactions is read from the counter kept on the client row, so this is a single primary-key lookup.
+     * In the ledger mode, the balance and count are computed by a single query on the client row and its ledger tail.
      *
      * @param clientId The id of the client to check. Cannot be null.
      * @return true if the client has made at least 3 transactions and their cagnotte is at least 10, false otherwise.
-     * @throws RuntimeException if a client with the provided id is not found.
+     * @throws NotFoundException if a client with the provided id is not found.
      */
     public boolean isCagnotteAvailable(Integer clientId) {
         if (clientId == null) {
-            throw new IllegalArgumentException("Clientid cannot be null");
+            throw InvalidRequestException.CLIENTID_NULL;
+        }
+        if (ledgerService.isEnabled()) {
+            LedgerBalance balance = ledgerService.findBalance(clientId).orElseThrow(() -> NotFoundException.CLIENT_NOT_FOUND);
+            return isAvailable(balance.getTransactions(), balance.getBalance());
         }
-        Client client = clientRepository.findById(clientId).orElseThrow(() -> new RuntimeException("Client not found"));
-        long transactionCount = transactionRepository.countByClientId(clientId);
-        return transactionCount >= 3 && client.getCagnotte() >= 10;
+        Client client = clientCache.findById(clientId).orElseThrow(() -> NotFoundException.CLIENT_NOT_FOUND);
+        return isAvailable(client.getTransactionCount(), client.getCagnotte().toCents());
+    }
+
+    /**
+     * Checks if the cagnottes of several clients are available.
+     * The clients are read in batch, with a constant number of queries whatever their number (see ClientService.getClients).
+     *
+     * @param request The ids and names of the clients to check. Null values are ignored.
+     * @return The availability of the cagnotte of each client found, by client id, in the order of the request.
+     *         Unknown ids and names are left out.
+     * @throws InvalidRequestException if the request has more ids and names than the maximum batch size.
+     */
+    public Map<Integer, Boolean> getCagnottesAvailability(ClientBatchRequest request) {
+        Map<Integer, Boolean> availability = new LinkedHashMap<>();
+        for (Client client : clientService.getClients(request)) {
+            availability.put(client.getId(), isAvailable(client.getTransactionCount(), client.getCagnotte().toCents()));
+        }
+        return availability;
+    }
+
+    /**
+     * Applies the availability rule of a cagnotte.
+     *
+     * @param transactionCount The number of transactions of the client.
+     * @param cagnotteCents    The cagnotte of the client, in cents.
+     * @return true if the client has made at least 3 transactions and their cagnotte is at least 10, false otherwise.
+     */
+    static boolean isAvailable(long transactionCount, long cagnotteCents) {
+        return transactionCount >= 3 && cagnotteCents >= MINIMUM_CAGNOTTE_CENTS;
     }
 }
\ No newline at end of file
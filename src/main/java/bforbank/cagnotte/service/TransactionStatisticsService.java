@@ -0,0 +1,204 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.TransactionAggregate;
+import bforbank.cagnotte.entities.TransactionStatistics;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Service class computing statistics of transactions, per client or for all clients.
+ * The statistics are computed by the database with SQL aggregates, so no transaction is loaded:
+ * the totals read the (client_id, ...) indexes of the client or scan the table, and the buckets read the creation time
+ * indexes over the requested range only. Buckets are days or months in UTC.
+ * With sharding, the statistics of all clients are aggregated on each shard and merged.
+ */
+@Service
+public class TransactionStatisticsService {
+
+    /**
+     * Period of the buckets of the statistics.
+     */
+    public enum Period {
+        // One bucket per day, the last 30 days by default
+        DAY(1, ChronoUnit.DAYS, 29),
+        // One bucket per month, the last 12 months by default
+        MONTH(100, ChronoUnit.MONTHS, 11);
+
+        // Divisor turning the yyyyMMdd key of a day into the key of its bucket
+        private final int divisor;
+
+        // Unit of the period
+        private final ChronoUnit unit;
+
+        // Number of periods before the last one in the default range
+        private final int defaultSpan;
+
+        Period(int divisor, ChronoUnit unit, int defaultSpan) {
+            this.divisor = divisor;
+            this.unit = unit;
+            this.defaultSpan = defaultSpan;
+        }
+
+        /**
+         * Parses a period, ignoring case.
+         *
+         * @param period The name of the period, day or month.
+         * @return The period.
+         * @throws InvalidRequestException if the period is neither day nor month.
+         */
+        public static Period parse(String period) {
+            try {
+                return valueOf(period.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw InvalidRequestException.PERIOD_INVALID;
+            }
+        }
+    }
+
+    private final TransactionRepository transactionRepository;
+    private final ClientCache clientCache;
+    private final ShardRouter shardRouter;
+    private final ReplicaRouter replicaRouter;
+    private final int maxBuckets;
+
+    /**
+     * Constructor for TransactionStatisticsService.
+     *
+     * @param transactionRepository The repository to handle transaction related database operations.
+     * @param clientCache The cache in front of the client repository.
+     * @param shardRouter The router sending the queries of each client to its shard.
+     * @param replicaRouter The router sending the aggregate queries to the read replicas.
+     * @param maxBuckets The maximum number of days or months in the range of a request.
+     */
+    public TransactionStatisticsService(TransactionRepository transactionRepository, ClientCache clientCache,
+                                        ShardRouter shardRouter, ReplicaRouter replicaRouter,
+                                        @Value("${cagnotte.transaction.statistics.max-buckets:1000}") int maxBuckets) {
+        this.transactionRepository = transactionRepository;
+        this.clientCache = clientCache;
+        this.shardRouter = shardRouter;
+        this.replicaRouter = replicaRouter;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Computes the statistics of all the transactions of a client, or of all clients.
+     *
+     * @param clientid The id of the client, or null for all clients.
+     * @return The number of transactions and the sum, minimum, maximum and average of their amounts.
+     * @throws NotFoundException if a client with the provided id is not found.
+     */
+    public TransactionStatistics getStatistics(Integer clientid) {
+        Totals totals = new Totals();
+        if (clientid == null) {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                int current = shard;
+                totals.add(replicaRouter.read(() -> shardRouter.onShard(current, transactionRepository::aggregate)));
+            }
+        } else {
+            checkClientExists(clientid);
+            totals.add(replicaRouter.read(() -> shardRouter.onShard(shardRouter.shardOf(clientid),
+                    () -> transactionRepository.aggregateByClientId(clientid))));
+        }
+        return totals.toStatistics(null);
+    }
+
+    /**
+     * Computes the statistics of the transactions of a client, or of all clients, per day or per month.
+     * Only the non-empty buckets are returned. The transactions written before their creation time was recorded are left out.
+     * Without from, the range starts 29 days (or 11 months) before to; without to, it ends today.
+     *
+     * @param clientid The id of the client, or null for all clients.
+     * @param period   The period of the buckets.
+     * @param from     The first day of the range, inclusive, in UTC, or null.
+     * @param to       The last day of the range, inclusive, in UTC, or null.
+     * @return The statistics of each bucket, ordered by start.
+     * @throws InvalidRequestException if from is after to, or if the range spans more than the maximum number of buckets.
+     * @throws NotFoundException if a client with the provided id is not found.
+     */
+    public List<TransactionStatistics> getStatistics(Integer clientid, Period period, LocalDate from, LocalDate to) {
+        LocalDate last = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate first = from != null ? from : last.minus(period.defaultSpan, period.unit);
+        if (period == Period.MONTH) {
+            first = first.withDayOfMonth(1);
+        }
+        if (first.isAfter(last)) {
+            throw InvalidRequestException.RANGE_INVALID;
+        }
+        if (period.unit.between(first, last) >= maxBuckets) {
+            throw InvalidRequestException.RANGE_TOO_LARGE;
+        }
+        Instant start = first.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = last.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Map<Integer, Totals> buckets = new TreeMap<>();
+        if (clientid == null) {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                int current = shard;
+                addBuckets(buckets, replicaRouter.read(() -> shardRouter.onShard(current,
+                        () -> transactionRepository.aggregateByBucket(start, end, period.divisor))));
+            }
+        } else {
+            checkClientExists(clientid);
+            addBuckets(buckets, replicaRouter.read(() -> shardRouter.onShard(shardRouter.shardOf(clientid),
+                    () -> transactionRepository.aggregateByClientIdAndBucket(clientid, start, end, period.divisor))));
+        }
+        List<TransactionStatistics> statistics = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, totals) -> statistics.add(totals.toStatistics(toStart(bucket, period))));
+        return statistics;
+    }
+
+    private void checkClientExists(Integer clientid) {
+        if (clientCache.findById(clientid).isEmpty()) {
+            throw NotFoundException.CLIENT_NOT_FOUND;
+        }
+    }
+
+    private static LocalDate toStart(int bucket, Period period) {
+        int day = bucket * period.divisor;
+        return LocalDate.of(day / 10000, day / 100 % 100, Math.max(day % 100, 1));
+    }
+
+    private static void addBuckets(Map<Integer, Totals> buckets, List<TransactionAggregate> aggregates) {
+        for (TransactionAggregate aggregate : aggregates) {
+            buckets.computeIfAbsent(aggregate.getBucket(), bucket -> new Totals()).add(aggregate);
+        }
+    }
+
+    /**
+     * Aggregates of transactions, in cents, merged from the aggregates of several shards.
+     */
+    private static final class Totals {
+        private long count;
+        private long total;
+        private Long minimum;
+        private Long maximum;
+
+        void add(TransactionAggregate aggregate) {
+            if (aggregate.getTransactions() == 0) {
+                return;
+            }
+            count += aggregate.getTransactions();
+            total = Math.addExact(total, aggregate.getTotal());
+            minimum = minimum == null ? aggregate.getMinimum() : Math.min(minimum, aggregate.getMinimum());
+            maximum = maximum == null ? aggregate.getMaximum() : Math.max(maximum, aggregate.getMaximum());
+        }
+
+        TransactionStatistics toStatistics(LocalDate start) {
+            return new TransactionStatistics(start, count, Money.ofCents(total),
+                    minimum == null ? null : Money.ofCents(minimum), maximum == null ? null : Money.ofCents(maximum));
+        }
+    }
+}
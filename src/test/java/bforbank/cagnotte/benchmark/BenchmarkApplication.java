@@ -0,0 +1,30 @@
+package bforbank.cagnotte.benchmark;
+
+import bforbank.cagnotte.ProjetCagnotteApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application without its web server, against an embedded H2 database standing in for MariaDB,
+ * so that the JMH benchmarks can call the services and repositories directly.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts an application context with its own in-memory database.
+     *
+     * @param database The name of the in-memory database, unique per benchmark.
+     * @return The started application context.
+     */
+    static ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(ProjetCagnotteApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000",
+                        "logging.level.root=WARN")
+                .run();
+    }
+}
@@ -0,0 +1,67 @@
+package bforbank.cagnotte.benchmark;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.service.ClientService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH benchmarks of the ClientService hot paths.
+ * The clients parameter selects the scenario: with 1 client every lookup hits the same entry,
+ * with 1000 clients the lookups are spread over many entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class ClientServiceBenchmark {
+
+    @Param({"1", "1000"})
+    public int clients;
+
+    private ConfigurableApplicationContext context;
+    private ClientService clientService;
+    private int[] clientIds;
+    private final AtomicLong createdClients = new AtomicLong();
+
+    /**
+     * Starts the application and creates the clients to look up.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("client-benchmark-" + clients);
+        clientService = context.getBean(ClientService.class);
+        clientIds = new int[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = clientService.createClient("Client" + i, Money.ZERO).getId();
+        }
+    }
+
+    /**
+     * Stops the application.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Client createClient() {
+        return clientService.createClient("New" + createdClients.incrementAndGet(), Money.ZERO);
+    }
+
+    @Benchmark
+    public Client getClientById() {
+        return clientService.getClientByIdOrName(clientIds[ThreadLocalRandom.current().nextInt(clients)], null);
+    }
+
+    @Benchmark
+    public Client getClientByName() {
+        return clientService.getClientByIdOrName(null, "Client" + ThreadLocalRandom.current().nextInt(clients));
+    }
+}
@@ -0,0 +1,136 @@
+package bforbank.cagnotte.benchmark;
+
+import bforbank.cagnotte.controller.ApiExceptionHandler;
+import bforbank.cagnotte.controller.TransactionController;
+import bforbank.cagnotte.entities.ApiError;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.service.ClientService;
+import bforbank.cagnotte.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * JMH benchmarks comparing the error paths of the controllers with their success path, all on the paginated
+ * getTransactions endpoint: a page of an existing client, an unknown client and a limit that is not positive.
+ * Requests go through the Spring MVC dispatch, the ApiExceptionHandler and the JSON serialization of the response.
+ * The controllers are called without their timing aspect, so that both error paths do the same work around the service.
+ * The WithStackTrace benchmarks reproduce the former error path, where the service threw a new exception
+ * with a stack trace and the controller caught it to build the ApiError.
+ * Like the success path, the not-found paths read the database once: the missing client, whose absence is not cached.
+ * The bad-request paths fail before any database access.
+ * The frames parameter adds stack frames below the dispatch, standing in for the servlet container and filter chain
+ * of a deployed application: the cost of a stack trace grows with the depth of the stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+public class ErrorPathBenchmark {
+
+    @Param({"0", "150"})
+    public int frames;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private String clientId;
+
+    /**
+     * Starts the application and creates the client whose transactions are read on the success path.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("error-path-benchmark");
+        Integer id = context.getBean(ClientService.class).createClient("Client", Money.ZERO).getId();
+        context.getBean(TransactionService.class).makeTransaction(id, Money.valueOf("10"));
+        clientId = String.valueOf(id);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(AopTestUtils.<TransactionController>getUltimateTargetObject(context.getBean(TransactionController.class)),
+                        new LegacyController(context.getBean(TransactionService.class)))
+                .setControllerAdvice(context.getBean(ApiExceptionHandler.class))
+                .build();
+    }
+
+    /**
+     * Stops the application.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult success() throws Exception {
+        return perform(get("/transaction/getTransactions").param("clientid", clientId).param("limit", "10"), frames);
+    }
+
+    @Benchmark
+    public MvcResult notFound() throws Exception {
+        return perform(get("/transaction/getTransactions").param("clientid", "-1").param("limit", "10"), frames);
+    }
+
+    @Benchmark
+    public MvcResult badRequest() throws Exception {
+        return perform(get("/transaction/getTransactions").param("clientid", clientId).param("limit", "0"), frames);
+    }
+
+    @Benchmark
+    public MvcResult notFoundWithStackTrace() throws Exception {
+        return perform(get("/legacy/getTransactions").param("clientid", "-1").param("limit", "10"), frames);
+    }
+
+    @Benchmark
+    public MvcResult badRequestWithStackTrace() throws Exception {
+        return perform(get("/legacy/getTransactions").param("clientid", clientId).param("limit", "0"), frames);
+    }
+
+    private MvcResult perform(RequestBuilder request, int depth) throws Exception {
+        return depth == 0 ? mockMvc.perform(request).andReturn() : perform(request, depth - 1);
+    }
+
+    /**
+     * Controller reproducing the former error handling: an exception with a stack trace is created
+     * for each error and caught by the controller.
+     */
+    @RestController
+    static class LegacyController {
+
+        private final TransactionService transactionService;
+
+        LegacyController(TransactionService transactionService) {
+            this.transactionService = transactionService;
+        }
+
+        @GetMapping("/legacy/getTransactions")
+        public ResponseEntity<?> getTransactionsPage(@RequestParam Integer clientid, @RequestParam int limit) {
+            try {
+                try {
+                    return ResponseEntity.ok(transactionService.getTransactions(clientid, null, limit));
+                } catch (InvalidRequestException e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                } catch (NotFoundException e) {
+                    throw new RuntimeException(e.getMessage());
+                }
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(new ApiError(e.getMessage()), HttpStatus.BAD_REQUEST);
+            } catch (RuntimeException e) {
+                return new ResponseEntity<>(new ApiError(e.getMessage()), HttpStatus.NOT_FOUND);
+            }
+        }
+    }
+}
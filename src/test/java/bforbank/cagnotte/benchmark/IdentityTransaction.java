@@ -0,0 +1,39 @@
+package bforbank.cagnotte.benchmark;
+
+import jakarta.persistence.*;
+
+/**
+ * Copy of the Transaction entity still using an IDENTITY id, used as the baseline of the insert benchmark.
+ */
+@Entity
+@Table(name = "identity_transaction")
+public class IdentityTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Unique identifier for the transaction
+    private Integer id;
+
+    // Identifier of the client associated with the transaction
+    private Integer clientId;
+
+    // Amount of the transaction
+    private Float amount;
+
+    /**
+     * Constructor for IdentityTransaction, required by JPA.
+     */
+    protected IdentityTransaction() {
+    }
+
+    /**
+     * Constructor for IdentityTransaction.
+     *
+     * @param clientId The identifier of the client associated with the transaction.
+     * @param amount   The amount of the transaction.
+     */
+    public IdentityTransaction(Integer clientId, Float amount) {
+        this.clientId = clientId;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,71 @@
+package bforbank.cagnotte.benchmark;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.IntFunction;
+
+/**
+ * This class benchmarks the insert throughput of transactions with an IDENTITY id (before)
+ * and with a pooled sequence id and Hibernate JDBC batching (after).
+ * It runs against the embedded H2 database by default; pass -Dspring.datasource.url=... (and credentials)
+ * to run it against MariaDB, where the gain of batching over network round-trips is much larger.
+ * Run it with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+public class InsertThroughputBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+    private static final int ROWS_PER_TRANSACTION = 500;
+    private static final int WARMUP_ROWS = 5_000;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * This benchmark prints the number of inserted rows per second for both id generation strategies.
+     */
+    @Test
+    public void compareInsertThroughput() {
+        IntFunction<Object> identity = i -> new IdentityTransaction(i % 100, 1.0f);
+        IntFunction<Object> sequence = i -> {
+            Transaction transaction = new Transaction();
+            transaction.setClientId(i % 100);
+            transaction.setAmount(Money.valueOf("1"));
+            return transaction;
+        };
+        insert(identity, WARMUP_ROWS);
+        insert(sequence, WARMUP_ROWS);
+
+        double before = insert(identity, ROWS);
+        double after = insert(sequence, ROWS);
+        System.out.printf("IDENTITY id, no batching:      %,.0f inserts/s%n", before);
+        System.out.printf("Pooled sequence id, batching:  %,.0f inserts/s%n", after);
+        System.out.printf("Speed-up:                      x%.2f%n", after / before);
+    }
+
+    private double insert(IntFunction<Object> factory, int rows) {
+        long start = System.nanoTime();
+        for (int offset = 0; offset < rows; offset += ROWS_PER_TRANSACTION) {
+            int first = offset;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = first; i < first + ROWS_PER_TRANSACTION; i++) {
+                    entityManager.persist(factory.apply(i));
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+        return rows / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,38 @@
+package bforbank.cagnotte.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * This class runs the JMH benchmarks of the benchmark package and writes their results to target/jmh-result.json,
+ * so that they can be compared across releases.
+ * Run it with: mvn test -Pbenchmark -Dtest=JmhBenchmarkTest
+ * A subset can be selected with a regular expression, e.g. -Djmh.include=TransactionServiceBenchmark.makeTransaction
+ */
+@Tag("benchmark")
+public class JmhBenchmarkTest {
+
+    /**
+     * This test runs the selected benchmarks.
+     */
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", getClass().getPackageName() + "\\..*Benchmark"))
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(3))
+                .forks(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
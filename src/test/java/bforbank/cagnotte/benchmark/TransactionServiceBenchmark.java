@@ -0,0 +1,83 @@
+package bforbank.cagnotte.benchmark;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionPage;
+import bforbank.cagnotte.service.ClientService;
+import bforbank.cagnotte.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the TransactionService hot paths.
+ * The clients parameter selects the scenario: with 1 client every thread contends on the same row,
+ * with 1000 clients the operations are spread over many rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class TransactionServiceBenchmark {
+
+    private static final int TRANSACTIONS_PER_CLIENT = 50;
+
+    @Param({"1", "1000"})
+    public int clients;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private int[] clientIds;
+
+    /**
+     * Starts the application and creates the clients, each with an initial history of transactions.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("transaction-benchmark-" + clients);
+        transactionService = context.getBean(TransactionService.class);
+        ClientService clientService = context.getBean(ClientService.class);
+        clientIds = new int[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = clientService.createClient("Client" + i, Money.ZERO).getId();
+            for (int j = 0; j < TRANSACTIONS_PER_CLIENT; j++) {
+                transactionService.makeTransaction(clientIds[i], Money.valueOf("1"));
+            }
+        }
+    }
+
+    /**
+     * Stops the application.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction makeTransaction() {
+        return transactionService.makeTransaction(randomClient(), Money.valueOf("1"));
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactions() {
+        return transactionService.getTransactions(randomClient());
+    }
+
+    @Benchmark
+    public TransactionPage getTransactionsPage() {
+        return transactionService.getTransactions(randomClient(), null, 20);
+    }
+
+    @Benchmark
+    public boolean isCagnotteAvailable() {
+        return transactionService.isCagnotteAvailable(randomClient());
+    }
+
+    private int randomClient() {
+        return clientIds[ThreadLocalRandom.current().nextInt(clientIds.length)];
+    }
+}
@@ -0,0 +1,112 @@
+package bforbank.cagnotte.benchmark;
+
+import bforbank.cagnotte.ProjetCagnotteApplication;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.service.ClientService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class load-tests the application with platform request threads and with virtual request threads
+ * while the database is slow. Every client lookup is delayed to emulate a slow query, the client cache is
+ * disabled and each request reads a different client so that every request reaches the repository, and Tomcat is limited to a small platform thread pool.
+ * Run it with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+public class VirtualThreadLoadBenchmarkTest {
+
+    private static final int QUERY_LATENCY_MS = 500;
+    private static final int TOMCAT_THREADS = 20;
+    private static final int CONCURRENT_REQUESTS = 200;
+
+    /**
+     * This benchmark prints the throughput of concurrent getClient requests in both modes.
+     */
+    @Test
+    public void compareThroughputWithSlowDatabase() throws Exception {
+        double platform = run(false);
+        double virtual = run(true);
+        System.out.printf("Platform request threads (max %d): %,.0f requests/s%n", TOMCAT_THREADS, platform);
+        System.out.printf("Virtual request threads:           %,.0f requests/s%n", virtual);
+        System.out.printf("Speed-up:                          x%.2f%n", virtual / platform);
+    }
+
+    private double run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProjetCagnotteApplication.class, SlowDatabaseConfiguration.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:virtual-threads-" + virtualThreads + ";MODE=MariaDB;DATABASE_TO_LOWER=TRUE",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "spring.datasource.hikari.maximum-pool-size=50",
+                        "cagnotte.client-cache.maximum-size=0")
+                .run()) {
+            ClientService clientService = context.getBean(ClientService.class);
+            List<URI> uris = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                Integer clientId = clientService.createClient("Load" + i, Money.ZERO).getId();
+                uris.add(URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                        + "/api/client/getClient?id=" + clientId));
+            }
+            HttpClient httpClient = HttpClient.newHttpClient();
+            send(httpClient, uris);
+
+            long start = System.nanoTime();
+            send(httpClient, uris);
+            return CONCURRENT_REQUESTS / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static void send(HttpClient httpClient, List<URI> uris) {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (URI uri : uris) {
+            responses.add(httpClient.sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding()));
+        }
+        responses.forEach(response -> assertEquals(200, response.join().statusCode()));
+    }
+
+    /**
+     * Configuration delaying every call to the client repository, to emulate a slow database.
+     */
+    @Configuration
+    static class SlowDatabaseConfiguration {
+
+        @Bean
+        static BeanPostProcessor slowClientRepository() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof ClientRepository)) {
+                        return bean;
+                    }
+                    return Proxy.newProxyInstance(ClientRepository.class.getClassLoader(), new Class<?>[]{ClientRepository.class},
+                            (proxy, method, args) -> {
+                                Thread.sleep(QUERY_LATENCY_MS);
+                                try {
+                                    return method.invoke(bean, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package bforbank.cagnotte.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class contains tests for the database warm-up, run against its own embedded H2 database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:warmup;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.minimum-idle=1",
+        "cagnotte.warmup.enabled=true"
+})
+public class DatabaseWarmupTest {
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private DatabaseWarmup databaseWarmup;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    /**
+     * This test checks that every connection of the pool is open once the application is ready, although the pool
+     * itself only keeps one idle connection, and that the warm-up queries, rolled back, can run again.
+     */
+    @Test
+    public void poolIsFilledBeforeReadiness() {
+        assertEquals(ReadinessState.ACCEPTING_TRAFFIC, applicationAvailability.getReadinessState());
+        assertEquals(4, dataSource.getHikariPoolMXBean().getTotalConnections());
+
+        databaseWarmup.warmUp();
+        assertEquals(4, dataSource.getHikariPoolMXBean().getTotalConnections());
+    }
+}
@@ -0,0 +1,52 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.service.ClientService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the SchemaMigrator class.
+ * It runs against its own embedded H2 database, since it moves the id sequence of the clients.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrator;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1"
+})
+public class SchemaMigratorTest {
+
+    @Autowired
+    private SchemaMigrator schemaMigrator;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * This test checks that migrating again takes no value from a sequence that is ahead of its table,
+     * and that a sequence behind the ids of its table is moved past them.
+     */
+    @Test
+    public void sequenceIsOnlyMovedWhenBehindItsTable() {
+        long nextValue = nextValue();
+        schemaMigrator.migrate();
+        assertEquals(nextValue, nextValue());
+
+        long legacyId = nextValue + 1000;
+        jdbcTemplate.update("insert into client (id, name, cagnotte_cents, transaction_count) values (?, 'Legacy', 0, 0)", legacyId);
+        schemaMigrator.migrate();
+        assertEquals(legacyId + 51, nextValue());
+        assertTrue(clientService.createClient("After legacy", Money.ZERO).getId() > legacyId);
+    }
+
+    private long nextValue() {
+        return jdbcTemplate.queryForObject("select base_value from information_schema.sequences where sequence_name = 'client_seq'",
+                Long.class);
+    }
+}
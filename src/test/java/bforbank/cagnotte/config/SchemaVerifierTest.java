@@ -0,0 +1,45 @@
+package bforbank.cagnotte.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the SchemaVerifier class.
+ * It runs against the embedded H2 database, whose schema is generated from the entities.
+ */
+@SpringBootTest
+public class SchemaVerifierTest {
+
+    @Autowired
+    private SchemaVerifier schemaVerifier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * This test checks that the schema generated from the entities has all the expected indexes,
+     * and that a dropped index is reported as missing.
+     */
+    @Test
+    public void generatedSchemaHasTheExpectedIndexes() throws SQLException {
+        assertTrue(schemaVerifier.findMissingIndexes().isEmpty());
+
+        jdbcTemplate.execute("drop index ix_transaction_client_id_id");
+        try {
+            List<SchemaVerifier.ExpectedIndex> missing = schemaVerifier.findMissingIndexes();
+            assertEquals(1, missing.size());
+            assertEquals("transaction", missing.get(0).table());
+        } finally {
+            jdbcTemplate.execute("create index ix_transaction_client_id_id on transaction (client_id, id)");
+        }
+        assertTrue(schemaVerifier.findMissingIndexes().isEmpty());
+    }
+}
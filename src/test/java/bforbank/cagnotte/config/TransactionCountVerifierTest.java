@@ -0,0 +1,61 @@
+package bforbank.cagnotte.config;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.service.ClientService;
+import bforbank.cagnotte.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the transaction count kept on the client row:
+ * its use by isCagnotteAvailable, its backfill by the SchemaMigrator class and the TransactionCountVerifier class.
+ * It runs against the embedded H2 database.
+ */
+@SpringBootTest
+public class TransactionCountVerifierTest {
+
+    @Autowired
+    private TransactionCountVerifier transactionCountVerifier;
+
+    @Autowired
+    private SchemaMigrator schemaMigrator;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * This test checks that the counter drives the availability of the cagnotte,
+     * that a missing counter is reported by the verifier and that the migration backfills it.
+     */
+    @Test
+    public void counterIsKeptBackfilledAndVerified() {
+        Integer clientId = clientService.createClient("Counted", Money.ZERO).getId();
+        transactionService.makeTransaction(clientId, Money.valueOf("4"));
+        transactionService.makeTransaction(clientId, Money.valueOf("4"));
+        assertFalse(transactionService.isCagnotteAvailable(clientId));
+        transactionService.makeTransaction(clientId, Money.valueOf("4"));
+        assertTrue(transactionService.isCagnotteAvailable(clientId));
+        assertTrue(transactionCountVerifier.verify().isEmpty());
+
+        jdbcTemplate.update("update client set transaction_count = null where id = ?", clientId);
+        assertEquals(List.of(clientId), transactionCountVerifier.verify());
+
+        schemaMigrator.migrate();
+        assertTrue(transactionCountVerifier.verify().isEmpty());
+        assertEquals(3, jdbcTemplate.queryForObject("select transaction_count from client where id = ?", Integer.class, clientId));
+    }
+}
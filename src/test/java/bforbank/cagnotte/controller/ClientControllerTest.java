@@ -1,27 +1,44 @@
 package bforbank.cagnotte.controller;
 
 import bforbank.cagnotte.entities.Client;
-import bforbank.cagnotte.entities.ApiError;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
 import bforbank.cagnotte.service.ClientService;
+import bforbank.cagnotte.service.ReplicaRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
-import java.util.Objects;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
  * This class contains unit tests for the ClientController class.
  * Each method tests a specific scenario for a specific method in the ClientController class.
+ * Error scenarios go through MockMvc, so that the exceptions are mapped by the ApiExceptionHandler.
  */
 public class ClientControllerTest {
 
     private ClientService clientService;
     private ClientController clientController;
+    private MockMvc mockMvc;
 
     /**
      * This method sets up the mocks and the class to be tested.
@@ -30,7 +47,10 @@ public class ClientControllerTest {
     @BeforeEach
     public void setup() {
         clientService = Mockito.mock(ClientService.class);
-        clientController = new ClientController(clientService);
+        ApiExceptionHandler exceptionHandler = new ApiExceptionHandler(new SimpleMeterRegistry());
+        clientController = new ClientController(clientService, new ReplicaRouter(new SimpleMeterRegistry(), Optional.empty(), "", "", Duration.ZERO),
+                exceptionHandler);
+        mockMvc = MockMvcBuilders.standaloneSetup(clientController).setControllerAdvice(exceptionHandler).build();
     }
 
     /**
@@ -39,7 +59,7 @@ public class ClientControllerTest {
     @Test
     public void createClientSuccessfully() {
         String name = "Test";
-        Float cagnotte = 100.0f;
+        Money cagnotte = Money.valueOf("100");
         Client client = new Client();
         client.setName(name);
         client.setCagnotte(cagnotte);
@@ -56,32 +76,41 @@ public class ClientControllerTest {
      * This test checks the scenario where a client creation fails because a client with the same name already exists.
      */
     @Test
-    public void createClientWithExistingName() {
+    public void createClientWithExistingName() throws Exception {
         String name = "Test";
-        Float cagnotte = 100.0f;
+        Money cagnotte = Money.valueOf("100");
 
-        when(clientService.createClient(name, cagnotte)).thenThrow(new RuntimeException("Client with the same name already exists"));
+        when(clientService.createClient(name, cagnotte)).thenThrow(ConflictException.CLIENT_ALREADY_EXISTS);
 
-        ResponseEntity<?> response = clientController.createClient(name, cagnotte);
-
-        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
-        assertEquals("Client with the same name already exists", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(post("/client/createClient").param("name", name).param("cagnotte", "100"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Client already exists"));
     }
 
     /**
      * This test checks the scenario where a client creation fails because the client name is blank.
      */
     @Test
-    public void createClientWithBlankName() {
+    public void createClientWithBlankName() throws Exception {
         String name = "";
-        Float cagnotte = 100.0f;
+        Money cagnotte = Money.valueOf("100");
 
-        when(clientService.createClient(name, cagnotte)).thenThrow(new IllegalArgumentException("Client name cannot be blank"));
+        when(clientService.createClient(name, cagnotte)).thenThrow(InvalidRequestException.CLIENT_NAME_BLANK);
 
-        ResponseEntity<?> response = clientController.createClient(name, cagnotte);
+        mockMvc.perform(post("/client/createClient").param("name", name).param("cagnotte", "100"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Client name cannot be null or blank"));
+    }
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Client name cannot be blank", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+    /**
+     * This test checks the scenario where a client creation fails because the cagnotte has more than two decimals.
+     * The amount is rejected before reaching the service.
+     */
+    @Test
+    public void createClientWithTooPreciseCagnotte() throws Exception {
+        mockMvc.perform(post("/client/createClient").param("name", "Test").param("cagnotte", "1.001"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Amount must have at most 2 decimals"));
     }
 
     /**
@@ -122,62 +151,83 @@ public class ClientControllerTest {
      * This test checks the scenario where a client retrieval fails because the client with the given id does not exist.
      */
     @Test
-    public void getClientWithNonExistingId() {
+    public void getClientWithNonExistingId() throws Exception {
         Integer id = 1;
 
-        when(clientService.getClientByIdOrName(id, null)).thenThrow(new RuntimeException("Client not found"));
-
-        ResponseEntity<?> response = clientController.getClient(id, null);
+        when(clientService.getClientByIdOrName(id, null)).thenThrow(NotFoundException.CLIENT_NOT_FOUND);
 
-        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals("Client not found", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(get("/client/getClient").param("id", "1"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Client not found"));
     }
 
     /**
      * This test checks the scenario where a client retrieval fails because the client with the given name does not exist.
      */
     @Test
-    public void getClientWithNonExistingName() {
+    public void getClientWithNonExistingName() throws Exception {
         String name = "Test";
 
-        when(clientService.getClientByIdOrName(null, name)).thenThrow(new RuntimeException("Client not found"));
+        when(clientService.getClientByIdOrName(null, name)).thenThrow(NotFoundException.CLIENT_NOT_FOUND);
 
-        ResponseEntity<?> response = clientController.getClient(null, name);
-
-        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals("Client not found", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(get("/client/getClient").param("name", name))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Client not found"));
     }
 
     /**
      * This test checks the scenario where a client retrieval fails because both id and name are null.
      */
     @Test
-    public void getClientWithNullIdAndName() {
-        Integer id = null;
-        String name = null;
-
-        when(clientService.getClientByIdOrName(id, name)).thenThrow(new IllegalArgumentException("Client id and name cannot be null"));
+    public void getClientWithNullIdAndName() throws Exception {
+        when(clientService.getClientByIdOrName(null, null)).thenThrow(InvalidRequestException.CLIENT_BLANK);
 
-        ResponseEntity<?> response = clientController.getClient(id, name);
-
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Client id and name cannot be null", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(get("/client/getClient"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Client cannot be null or blank"));
     }
 
     /**
      * This test checks the scenario where a client retrieval fails because the name is blank.
      */
     @Test
-    public void getClientWithBlankName() {
-        Integer id = null;
+    public void getClientWithBlankName() throws Exception {
         String name = "";
 
-        when(clientService.getClientByIdOrName(id, name)).thenThrow(new IllegalArgumentException("Client id and name cannot be null or blank"));
+        when(clientService.getClientByIdOrName(null, name)).thenThrow(InvalidRequestException.CLIENT_BLANK);
 
-        ResponseEntity<?> response = clientController.getClient(id, name);
+        mockMvc.perform(get("/client/getClient").param("name", name))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Client cannot be null or blank"));
+    }
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Client id and name cannot be null or blank", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+    /**
+     * This test checks the scenario where several clients are retrieved in a batch.
+     */
+    @Test
+    public void batchGetSuccessfully() throws Exception {
+        Client client = new Client();
+        client.setId(1);
+        client.setName("Test");
+        client.setCagnotte(Money.valueOf("10"));
+        when(clientService.getClients(any())).thenReturn(List.of(client));
+
+        mockMvc.perform(post("/client/batchGet").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, 2], \"names\": [\"Test\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].cagnotte").value(10.0));
     }
 
+    /**
+     * This test checks the scenario where a batch of clients fails because it is too large.
+     */
+    @Test
+    public void batchGetTooLarge() throws Exception {
+        when(clientService.getClients(any())).thenThrow(InvalidRequestException.BATCH_TOO_LARGE);
+
+        mockMvc.perform(post("/client/batchGet").contentType(MediaType.APPLICATION_JSON).content("{\"ids\": [1]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Too many clients in the batch"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package bforbank.cagnotte.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * This class contains tests for the metrics published on the Prometheus scrape endpoint.
+ * It runs the whole application against the embedded H2 database.
+ */
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=health,metrics,prometheus",
+        "management.observations.annotations.enabled=true",
+        "management.metrics.distribution.percentiles-histogram.cagnotte=true",
+        "management.metrics.distribution.percentiles.cagnotte=0.5,0.99,0.999"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * This test checks that controller timings, repository timings, pool metrics and error counters are scraped.
+     */
+    @Test
+    public void hotPathMetricsAreScraped() throws Exception {
+        mockMvc.perform(post("/client/createClient").param("name", "Scraped")).andExpect(status().isCreated());
+        mockMvc.perform(get("/client/getClient").param("id", "-1")).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("cagnotte_controller_seconds_count{class=\"bforbank.cagnotte.controller.ClientController\"")))
+                .andExpect(content().string(containsString("quantile=\"0.999\"")))
+                .andExpect(content().string(containsString("cagnotte_errors_total{exception=\"NotFoundException\",status=\"404\"")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_count")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_count")));
+    }
+}
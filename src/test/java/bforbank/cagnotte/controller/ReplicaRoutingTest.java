@@ -0,0 +1,175 @@
+package bforbank.cagnotte.controller;
+
+import bforbank.cagnotte.service.ReplicaRouter;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * This class contains tests for the read replicas.
+ * The replica is the stale schema of the embedded H2 database, holding a copy of the tables taken at some point,
+ * so it stands in for a replica lagging behind the primary. The replication position of each side is simulated
+ * by H2 functions standing in for @@gtid_binlog_pos and MASTER_GTID_WAIT: its sequence is the number of rows written.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY,
+        "cagnotte.replica.enabled=true",
+        "cagnotte.replica.urls=" + ReplicaRoutingTest.PRIMARY + ";SCHEMA=stale",
+        "cagnotte.replica.position-query=select public.gtid_binlog_pos()",
+        "cagnotte.replica.wait-query=select public.master_gtid_wait(?, ?)"
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingTest {
+
+    static final String PRIMARY = "jdbc:h2:mem:replica;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Creates the functions simulating the replication positions.
+     */
+    @BeforeEach
+    public void createPositionFunctions() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(PRIMARY, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create schema if not exists stale");
+            statement.execute("create alias if not exists public.gtid_binlog_pos for '"
+                    + ReplicaRoutingTest.class.getName() + ".binlogPosition'");
+            statement.execute("create alias if not exists public.master_gtid_wait for '"
+                    + ReplicaRoutingTest.class.getName() + ".waitForPosition'");
+        }
+    }
+
+    /**
+     * This test checks that reads without a consistency token, or with the token of a write the replica has applied,
+     * are served by the replica, and that reads with the token of a write the replica has not applied yet
+     * are served by the primary and see the write.
+     */
+    @Test
+    public void readsAfterAWriteSeeTheWrite() throws Exception {
+        MvcResult created = mockMvc.perform(post("/client/createClient").param("name", "Replicated"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        assertTrue(ReplicaRouter.isValidToken(created.getResponse().getHeader(ReplicaRouter.CONSISTENCY_TOKEN_HEADER)));
+        String clientId = String.valueOf((Integer) JsonPath.read(created.getResponse().getContentAsString(), "$.id"));
+        String appliedToken = mockMvc.perform(post("/transaction/makeTransaction").param("clientid", clientId).param("amount", "10"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(ReplicaRouter.CONSISTENCY_TOKEN_HEADER);
+        copyToReplica();
+
+        String token = mockMvc.perform(post("/transaction/makeTransaction").param("clientid", clientId).param("amount", "5"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(ReplicaRouter.CONSISTENCY_TOKEN_HEADER);
+        assertTrue(ReplicaRouter.isValidToken(token));
+        double replicaReads = meterRegistry.counter("cagnotte.replica.reads", "target", "replica").count();
+
+        mockMvc.perform(get("/transaction/getTransactions").param("clientid", clientId)
+                        .header(ReplicaRouter.CONSISTENCY_TOKEN_HEADER, token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        mockMvc.perform(get("/transaction/getTransactions").param("clientid", clientId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/transaction/getTransactions").param("clientid", clientId)
+                        .header(ReplicaRouter.CONSISTENCY_TOKEN_HEADER, appliedToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        assertEquals(replicaReads + 2, meterRegistry.counter("cagnotte.replica.reads", "target", "replica").count());
+
+        // Once the replica has applied the write, the reads with its token are served by the replica
+        copyToReplica();
+        mockMvc.perform(get("/transaction/getTransactions").param("clientid", clientId)
+                        .header(ReplicaRouter.CONSISTENCY_TOKEN_HEADER, token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        assertEquals(replicaReads + 3, meterRegistry.counter("cagnotte.replica.reads", "target", "replica").count());
+    }
+
+    /**
+     * This test checks that a stream sent right after a write, with its consistency token, sees the write,
+     * although the streamed body is written on another thread than the request.
+     */
+    @Test
+    public void streamAfterAWriteSeesTheWrite() throws Exception {
+        MvcResult created = mockMvc.perform(post("/client/createClient").param("name", "Streamed replica"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String clientId = String.valueOf((Integer) JsonPath.read(created.getResponse().getContentAsString(), "$.id"));
+        copyToReplica();
+        String token = mockMvc.perform(post("/transaction/makeTransaction").param("clientid", clientId).param("amount", "5"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(ReplicaRouter.CONSISTENCY_TOKEN_HEADER);
+
+        MvcResult stream = mockMvc.perform(get("/transaction/streamTransactions").param("clientid", clientId)
+                        .header(ReplicaRouter.CONSISTENCY_TOKEN_HEADER, token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(stream))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    /**
+     * Replication position of the primary, standing in for @@gtid_binlog_pos.
+     *
+     * @return The position, whose sequence is the number of clients and transactions of the primary.
+     */
+    public static String binlogPosition(Connection connection) throws SQLException {
+        return "0-1-" + countRows(connection, "public");
+    }
+
+    /**
+     * Check of the position of the replica, standing in for MASTER_GTID_WAIT.
+     *
+     * @return 0 if the replica has reached the position, -1 otherwise.
+     */
+    public static int waitForPosition(Connection connection, String position, double timeout) throws SQLException {
+        long sequence = Long.parseLong(position.substring(position.lastIndexOf('-') + 1));
+        return countRows(connection, "stale") >= sequence ? 0 : -1;
+    }
+
+    private static long countRows(Connection connection, String schema) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select (select count(*) from " + schema + ".client)"
+                     + " + (select count(*) from " + schema + ".transaction)")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void copyToReplica() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(PRIMARY, "sa", "");
+             Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"client", "transaction"}) {
+                statement.execute("drop table if exists stale." + table);
+                statement.execute("create table stale." + table + " as select * from public." + table);
+            }
+        }
+    }
+}
@@ -1,27 +1,69 @@
 package bforbank.cagnotte.controller;
 
 import bforbank.cagnotte.entities.ApiError;
+import bforbank.cagnotte.entities.BulkImportResult;
 import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.Money;
 import bforbank.cagnotte.repository.TransactionRepository;
 import bforbank.cagnotte.service.ClientService;
 import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionPage;
+import bforbank.cagnotte.entities.TransactionStatistics;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.exception.ServiceUnavailableException;
+import bforbank.cagnotte.service.AsyncTransactionService;
+import bforbank.cagnotte.service.BalanceNotifier;
+import bforbank.cagnotte.service.ReplicaRouter;
+import bforbank.cagnotte.service.TransactionImportService;
 import bforbank.cagnotte.service.TransactionService;
+import bforbank.cagnotte.service.TransactionStatisticsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
  * This class contains unit tests for the TransactionController class.
  * Each method tests a specific scenario for a specific method in the TransactionController class.
+ * Error scenarios go through MockMvc, so that the exceptions are mapped by the ApiExceptionHandler.
  */
 public class TransactionControllerTest {
 
@@ -29,7 +71,11 @@ public class TransactionControllerTest {
 
     private TransactionRepository transactionRepository;
     private TransactionService transactionService;
+    private TransactionImportService transactionImportService;
+    private AsyncTransactionService asyncTransactionService;
+    private TransactionStatisticsService statisticsService;
     private TransactionController transactionController;
+    private MockMvc mockMvc;
 
     /**
      * This method sets up the mocks and the class to be tested.
@@ -40,7 +86,14 @@ public class TransactionControllerTest {
         clientService = Mockito.mock(ClientService.class);
         transactionRepository = Mockito.mock(TransactionRepository.class);
         transactionService = Mockito.mock(TransactionService.class);
-        transactionController = new TransactionController(transactionService);
+        transactionImportService = Mockito.mock(TransactionImportService.class);
+        asyncTransactionService = Mockito.mock(AsyncTransactionService.class);
+        statisticsService = Mockito.mock(TransactionStatisticsService.class);
+        ApiExceptionHandler exceptionHandler = new ApiExceptionHandler(new SimpleMeterRegistry());
+        transactionController = new TransactionController(transactionService, transactionImportService, asyncTransactionService,
+                statisticsService, Mockito.mock(BalanceNotifier.class), new ReplicaRouter(new SimpleMeterRegistry(), Optional.empty(), "", "", Duration.ZERO), new ObjectMapper(),
+                exceptionHandler);
+        mockMvc = MockMvcBuilders.standaloneSetup(transactionController).setControllerAdvice(exceptionHandler).build();
     }
 
     /**
@@ -49,14 +102,14 @@ public class TransactionControllerTest {
     @Test
     public void makeTransactionSuccessfully() {
         Integer clientId = 1;
-        Float amount = 100.0f;
+        Money amount = Money.valueOf("100");
         Transaction transaction = new Transaction();
         transaction.setClientId(clientId);
         transaction.setAmount(amount);
 
-        when(transactionService.makeTransaction(clientId, amount)).thenReturn(transaction);
+        when(transactionService.makeTransaction(clientId, amount, null)).thenReturn(transaction);
 
-        ResponseEntity<?> response = transactionController.makeTransaction(clientId, amount);
+        ResponseEntity<?> response = transactionController.makeTransaction(clientId, amount, null);
 
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertEquals(transaction, response.getBody());
@@ -66,48 +119,140 @@ public class TransactionControllerTest {
      * This test checks the scenario where a transaction fails because the amount is invalid.
      */
     @Test
-    public void makeTransactionWithInvalidAmount() {
+    public void makeTransactionWithInvalidAmount() throws Exception {
         Integer clientId = 1;
-        Float amount = -100.0f;
+        Money amount = Money.valueOf("-100");
+
+        when(transactionService.makeTransaction(clientId, amount, null)).thenThrow(new InvalidRequestException("Bad request"));
 
-        when(transactionService.makeTransaction(clientId, amount)).thenThrow(new IllegalArgumentException("Bad request"));
+        mockMvc.perform(post("/transaction/makeTransaction").param("clientid", "1").param("amount", "-100"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Bad request"));
+    }
 
-        ResponseEntity<?> response = transactionController.makeTransaction(clientId, amount);
+    /**
+     * This test checks that the Idempotency-Key header is passed to the service,
+     * and that a key reused for a different transaction is answered with 409.
+     */
+    @Test
+    public void makeTransactionWithReusedIdempotencyKey() throws Exception {
+        when(transactionService.makeTransaction(1, Money.valueOf("100"), "retry-1")).thenThrow(ConflictException.IDEMPOTENCY_KEY_REUSED);
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Bad request", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(post("/transaction/makeTransaction").param("clientid", "1").param("amount", "100")
+                        .header("Idempotency-Key", "retry-1"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Idempotency-Key already used for a different transaction"));
     }
 
     /**
-     * This test checks the scenario where a transaction fails because the client id is null.
+     * This test checks the scenario where a transaction fails because the client id is missing.
      */
     @Test
-    public void makeTransactionWithNullClientId() {
-        Integer clientId = null;
-        Float amount = 100.0f;
+    public void makeTransactionWithNullClientId() throws Exception {
+        mockMvc.perform(post("/transaction/makeTransaction").param("amount", "100"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Parameter clientid is missing"));
+    }
 
-        when(transactionService.makeTransaction(clientId, amount)).thenThrow(new IllegalArgumentException("Clientid cannot be null"));
+    /**
+     * This test checks the scenario where a transaction fails because the amount is missing.
+     */
+    @Test
+    public void makeTransactionWithNullAmount() throws Exception {
+        mockMvc.perform(post("/transaction/makeTransaction").param("clientid", "1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Parameter amount is missing"));
+    }
 
-        ResponseEntity<?> response = transactionController.makeTransaction(clientId, amount);
+    /**
+     * This test checks the scenario where a transaction is made successfully through the asynchronous endpoint.
+     */
+    @Test
+    public void makeTransactionAsyncSuccessfully() throws Exception {
+        Transaction transaction = new Transaction();
+        transaction.setId(7);
+        transaction.setClientId(1);
+        transaction.setAmount(Money.valueOf("100"));
+
+        when(asyncTransactionService.makeTransaction(1, Money.valueOf("100"))).thenReturn(CompletableFuture.completedFuture(transaction));
+
+        MvcResult result = mockMvc.perform(post("/transaction/makeTransactionAsync").param("clientid", "1").param("amount", "100"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(7));
+    }
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Clientid cannot be null", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+    /**
+     * This test checks the scenario where an asynchronous transaction fails because the client does not exist.
+     */
+    @Test
+    public void makeTransactionAsyncWithNonExistingClient() throws Exception {
+        when(asyncTransactionService.makeTransaction(1, Money.valueOf("100")))
+                .thenReturn(CompletableFuture.failedFuture(NotFoundException.CLIENT_NOT_FOUND));
+
+        MvcResult result = mockMvc.perform(post("/transaction/makeTransactionAsync").param("clientid", "1").param("amount", "100"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Client not found"));
     }
 
     /**
-     * This test checks the scenario where a transaction fails because the amount is null.
+     * This test checks the scenario where an asynchronous transaction is rejected because too many transactions are pending.
      */
     @Test
-    public void makeTransactionWithNullAmount() {
-        Integer clientId = 1;
-        Float amount = 100.0f;
+    public void makeTransactionAsyncWhenSaturated() throws Exception {
+        when(asyncTransactionService.makeTransaction(1, Money.valueOf("100"))).thenThrow(ServiceUnavailableException.TRANSACTIONS_SATURATED);
+
+        MvcResult result = mockMvc.perform(post("/transaction/makeTransactionAsync").param("clientid", "1").param("amount", "100"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.error").value("Too many pending transactions, retry later"));
+    }
 
-        when(transactionService.makeTransaction(clientId, amount)).thenThrow(new IllegalArgumentException("Amount cannot be null"));
+    /**
+     * This test checks the scenario where the transactions of a client are streamed as a JSON array.
+     */
+    @Test
+    public void streamTransactionsSuccessfully() throws Exception {
+        Transaction first = new Transaction();
+        first.setId(1);
+        first.setClientId(1);
+        first.setAmount(Money.valueOf("10"));
+        Transaction second = new Transaction();
+        second.setId(2);
+        second.setClientId(1);
+        second.setAmount(Money.valueOf("5"));
+        doAnswer(invocation -> {
+            Consumer<Transaction> consumer = invocation.getArgument(1);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(transactionService).streamTransactions(eq(1), any());
+
+        MvcResult result = mockMvc.perform(get("/transaction/streamTransactions").param("clientid", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+    }
 
-        ResponseEntity<?> response = transactionController.makeTransaction(clientId, amount);
+    /**
+     * This test checks the scenario where the transactions of a client that does not exist are streamed.
+     */
+    @Test
+    public void streamTransactionsWithNonExistingClient() throws Exception {
+        doThrow(NotFoundException.CLIENT_NOT_FOUND).when(transactionService).checkClientExists(1);
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Amount cannot be null", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(get("/transaction/streamTransactions").param("clientid", "1"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Client not found"));
     }
 
     /**
@@ -118,10 +263,10 @@ public class TransactionControllerTest {
         Integer clientId = 1;
         Transaction transaction1 = new Transaction();
         transaction1.setClientId(clientId);
-        transaction1.setAmount(100.0f);
+        transaction1.setAmount(Money.valueOf("100"));
         Transaction transaction2 = new Transaction();
         transaction2.setClientId(clientId);
-        transaction2.setAmount(200.0f);
+        transaction2.setAmount(Money.valueOf("200"));
         List<Transaction> transactions = Arrays.asList(transaction1, transaction2);
 
         when(transactionService.getTransactions(clientId)).thenReturn(transactions);
@@ -133,49 +278,71 @@ public class TransactionControllerTest {
     }
 
     /**
-     * This test checks the scenario where transactions retrieval fails because the client id is invalid.
+     * This test checks the scenario where transactions retrieval fails because the client does not exist.
      */
     @Test
-    public void getTransactionsWithInvalidClientId() {
+    public void getTransactionsWithInvalidClientId() throws Exception {
         Integer clientId = -1;
 
-        when(transactionService.getTransactions(clientId)).thenThrow(new IllegalArgumentException("Bad request"));
+        when(transactionService.getTransactions(clientId)).thenThrow(NotFoundException.CLIENT_NOT_FOUND);
 
-        ResponseEntity<?> response = transactionController.getTransactions(clientId);
+        mockMvc.perform(get("/transaction/getTransactions").param("clientid", "-1"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Client not found"));
+    }
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Bad request", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+    /**
+     * This test checks the scenario where transactions retrieval fails because the client id is missing.
+     */
+    @Test
+    public void getTransactionsWithNullClientId() throws Exception {
+        mockMvc.perform(get("/transaction/getTransactions"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Parameter clientid is missing"));
     }
 
     /**
-     * This test checks the scenario where transactions retrieval fails because the client id is null.
+     * This test checks the scenario where a page of transactions is retrieved successfully.
      */
     @Test
-    public void getTransactionsWithNullClientId() {
-        Integer clientId = null;
+    public void getTransactionsPageSuccessfully() {
+        Integer clientId = 1;
+        Transaction transaction = new Transaction();
+        transaction.setId(7);
+        transaction.setClientId(clientId);
+        transaction.setAmount(Money.valueOf("100"));
+        TransactionPage page = new TransactionPage(List.of(transaction), 7);
 
-        when(transactionService.getTransactions(clientId)).thenThrow(new IllegalArgumentException("Clientid cannot be null"));
+        when(transactionService.getTransactions(clientId, 3, 1)).thenReturn(page);
 
-        ResponseEntity<?> response = transactionController.getTransactions(clientId);
+        ResponseEntity<?> response = transactionController.getTransactionsPage(clientId, 1, 3);
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Clientid cannot be null", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
     }
 
-
     /**
-     * This test checks the scenario where the availability of a cagnotte fails to be checked because the client id is null.
+     * This test checks the scenario where a page of transactions fails to be retrieved because the limit is not positive.
      */
     @Test
-    public void isCagnotteAvailableWithNullClientId() {
-        Integer clientId = null;
+    public void getTransactionsPageWithInvalidLimit() throws Exception {
+        Integer clientId = 1;
 
-        when(transactionService.isCagnotteAvailable(clientId)).thenThrow(new IllegalArgumentException("Clientid cannot be null"));
+        when(transactionService.getTransactions(clientId, null, 0)).thenThrow(InvalidRequestException.LIMIT_NOT_POSITIVE);
 
-        ResponseEntity<?> response = transactionController.isCagnotteAvailable(clientId);
+        mockMvc.perform(get("/transaction/getTransactions").param("clientid", "1").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Limit must be positive"));
+    }
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Clientid cannot be null", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+    /**
+     * This test checks the scenario where the availability of a cagnotte fails to be checked because the client id is missing.
+     */
+    @Test
+    public void isCagnotteAvailableWithNullClientId() throws Exception {
+        mockMvc.perform(get("/transaction/isCagnotteAvailable"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Parameter clientid is missing"));
     }
 
     /**
@@ -194,18 +361,17 @@ public class TransactionControllerTest {
     }
 
     /**
-     * This test checks the scenario where the availability of a cagnotte fails to be checked because the client id is invalid.
+     * This test checks the scenario where the availability of a cagnotte fails to be checked because the client does not exist.
      */
     @Test
-    public void isCagnotteAvailableWithInvalidClientId() {
+    public void isCagnotteAvailableWithInvalidClientId() throws Exception {
         Integer clientId = -1;
 
-        when(transactionService.isCagnotteAvailable(clientId)).thenThrow(new IllegalArgumentException("Bad request"));
-
-        ResponseEntity<?> response = transactionController.isCagnotteAvailable(clientId);
+        when(transactionService.isCagnotteAvailable(clientId)).thenThrow(NotFoundException.CLIENT_NOT_FOUND);
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Bad request", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+        mockMvc.perform(get("/transaction/isCagnotteAvailable").param("clientid", "-1"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Client not found"));
     }
 
     /**
@@ -219,7 +385,7 @@ public class TransactionControllerTest {
         Client client = new Client();
         client.setId(clientId);
         client.setName(name);
-        client.setCagnotte(10.0f);
+        client.setCagnotte(Money.valueOf("10"));
         when(clientService.getClientByIdOrName(clientId,name)).thenReturn(client);
         when(transactionRepository.countByClientId(clientId)).thenReturn(2);
 
@@ -240,7 +406,7 @@ public class TransactionControllerTest {
         Client client = new Client();
         client.setId(clientId);
         client.setName(name);
-        client.setCagnotte(9.0f);
+        client.setCagnotte(Money.valueOf("9"));
         when(clientService.getClientByIdOrName(clientId,name)).thenReturn(client);
         when(transactionRepository.countByClientId(clientId)).thenReturn(3);
 
@@ -249,4 +415,76 @@ public class TransactionControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(false, response.getBody());
     }
+
+    /**
+     * This test checks the scenario where the availability of several cagnottes is checked in a batch.
+     */
+    @Test
+    public void batchAvailabilitySuccessfully() throws Exception {
+        when(transactionService.getCagnottesAvailability(any())).thenReturn(new LinkedHashMap<>(Map.of(1, true)));
+
+        mockMvc.perform(post("/transaction/batchAvailability").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, 2]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1").value(true))
+                .andExpect(jsonPath("$.2").doesNotExist());
+    }
+
+    /**
+     * This test checks the scenario where the monthly statistics of a client are retrieved.
+     */
+    @Test
+    public void getStatisticsBucketsSuccessfully() throws Exception {
+        TransactionStatistics march = new TransactionStatistics(LocalDate.of(2024, 3, 1), 2, Money.valueOf("30"),
+                Money.valueOf("10"), Money.valueOf("20"));
+        when(statisticsService.getStatistics(1, TransactionStatisticsService.Period.MONTH,
+                LocalDate.of(2024, 1, 1), null)).thenReturn(List.of(march));
+
+        mockMvc.perform(get("/transaction/statistics/buckets").param("clientid", "1").param("period", "month")
+                        .param("from", "2024-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start").value("2024-03-01"))
+                .andExpect(jsonPath("$[0].count").value(2))
+                .andExpect(jsonPath("$[0].average").value(15.0));
+    }
+
+    /**
+     * This test checks the scenario where the period of the statistics is invalid.
+     */
+    @Test
+    public void getStatisticsBucketsWithInvalidPeriod() throws Exception {
+        mockMvc.perform(get("/transaction/statistics/buckets").param("period", "week"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(InvalidRequestException.PERIOD_INVALID.getMessage()));
+    }
+
+    /**
+     * This test checks the scenario where a CSV bulk import is handed to the import service.
+     */
+    @Test
+    public void bulkImportCsvSuccessfully() throws IOException {
+        InputStream body = new ByteArrayInputStream("clientid,amount\n1,10.0\n".getBytes());
+        BulkImportResult result = new BulkImportResult();
+        result.accept(1);
+
+        when(transactionImportService.importTransactions(any(Reader.class), eq(TransactionImportService.Format.CSV))).thenReturn(result);
+
+        ResponseEntity<?> response = transactionController.bulkImport("text/csv", body);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
+
+    /**
+     * This test checks the scenario where a bulk import fails because the content type is not supported.
+     */
+    @Test
+    public void bulkImportWithUnsupportedContentType() throws IOException {
+        InputStream body = new ByteArrayInputStream("<transactions/>".getBytes());
+
+        ResponseEntity<?> response = transactionController.bulkImport("application/xml", body);
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, response.getStatusCode());
+        assertEquals("Content type must be application/x-ndjson or text/csv", ((ApiError) Objects.requireNonNull(response.getBody())).getError());
+    }
 }
\ No newline at end of file
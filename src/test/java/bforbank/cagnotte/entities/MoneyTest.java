@@ -0,0 +1,80 @@
+package bforbank.cagnotte.entities;
+
+import bforbank.cagnotte.exception.InvalidRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class contains tests for the Money class.
+ */
+public class MoneyTest {
+
+    // Enough for a Float balance to drift by more than a cent, while keeping the test fast
+    private static final int DEPOSITS = 10_000;
+
+    /**
+     * This test checks that 10K deposits of one cent add up exactly, where a Float balance drifts.
+     */
+    @Test
+    public void centDepositsDoNotDrift() {
+        Money money = Money.ZERO;
+        float drifting = 0.0f;
+        for (int i = 0; i < DEPOSITS; i++) {
+            money = money.plus(Money.ofCents(1));
+            drifting += 0.01f;
+        }
+
+        assertEquals(Money.valueOf("100.00"), money);
+        assertNotEquals(100.0f, drifting);
+    }
+
+    /**
+     * This test checks that the sum of 10K random deposits is the exact decimal sum of the deposits.
+     */
+    @Test
+    public void randomDepositsAddUpExactly() {
+        SplittableRandom random = new SplittableRandom(42);
+        Money money = Money.ZERO;
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int i = 0; i < DEPOSITS; i++) {
+            long cents = random.nextLong(1, 1_000_000);
+            money = money.plus(Money.ofCents(cents));
+            expected = expected.add(BigDecimal.valueOf(cents, 2));
+        }
+
+        assertEquals(expected, money.toBigDecimal());
+    }
+
+    /**
+     * This test checks the parsing of amounts and the rejection of sub-cent amounts.
+     */
+    @Test
+    public void parsesAmountsWithAtMostTwoDecimals() {
+        assertEquals(1050, Money.valueOf("10.5").toCents());
+        assertEquals(-100, Money.valueOf("-1").toCents());
+        assertEquals(Money.valueOf("10.50"), Money.valueOf("10.5"));
+        assertThrows(InvalidRequestException.class, () -> Money.valueOf("10.005"));
+        assertThrows(InvalidRequestException.class, () -> Money.valueOf("ten"));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).plus(Money.ofCents(1)));
+    }
+
+    /**
+     * This test checks that amounts are written to and read from JSON as decimal numbers, as the Float amounts were.
+     */
+    @Test
+    public void jsonIsADecimalNumber() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Transaction transaction = new Transaction();
+        transaction.setAmount(Money.valueOf("10.5"));
+
+        assertEquals("{\"id\":null,\"clientId\":null,\"amount\":10.50}", objectMapper.writeValueAsString(transaction));
+        assertEquals(Money.valueOf("10.5"), objectMapper.readValue("10.5", Money.class));
+    }
+}
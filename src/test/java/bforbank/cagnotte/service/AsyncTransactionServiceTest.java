@@ -0,0 +1,98 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class contains unit tests for the AsyncTransactionService class.
+ * The executor has one thread and a queue of one transaction.
+ */
+public class AsyncTransactionServiceTest {
+
+    private TransactionService transactionService;
+    private AsyncTransactionService asyncTransactionService;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * This method sets up the mocks and the class to be tested.
+     * Transactions of client 1 block until the release latch is opened.
+     */
+    @BeforeEach
+    public void setup() {
+        transactionService = Mockito.mock(TransactionService.class);
+        when(transactionService.makeTransaction(eq(1), any())).thenAnswer(invocation -> {
+            release.await();
+            return new Transaction();
+        });
+        asyncTransactionService = new AsyncTransactionService(transactionService, new SimpleMeterRegistry(), 1, 1, Duration.ofMillis(500));
+    }
+
+    /**
+     * This method opens the latch and stops the executor.
+     */
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        asyncTransactionService.stop();
+    }
+
+    /**
+     * This test checks that transactions are rejected once the thread and the queue are busy,
+     * and that the accepted ones complete once the database answers.
+     */
+    @Test
+    public void rejectsTransactionsWhenSaturated() throws Exception {
+        CompletableFuture<Transaction> running = asyncTransactionService.makeTransaction(1, Money.valueOf("1"));
+        CompletableFuture<Transaction> queued = asyncTransactionService.makeTransaction(1, Money.valueOf("1"));
+
+        assertSame(ServiceUnavailableException.TRANSACTIONS_SATURATED,
+                assertThrows(ServiceUnavailableException.class, () -> asyncTransactionService.makeTransaction(1, Money.valueOf("1"))));
+
+        release.countDown();
+        running.get(1, TimeUnit.SECONDS);
+        queued.get(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * This test checks that a transaction not completed in time fails with a timeout.
+     */
+    @Test
+    public void timesOutSlowTransactions() {
+        CompletableFuture<Transaction> slow = asyncTransactionService.makeTransaction(1, Money.valueOf("1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> slow.get(2, TimeUnit.SECONDS));
+        assertSame(ServiceUnavailableException.TRANSACTION_TIMEOUT, e.getCause());
+    }
+
+    /**
+     * This test checks that the errors of the transaction service are passed on unwrapped.
+     */
+    @Test
+    public void passesOnServiceErrors() {
+        when(transactionService.makeTransaction(eq(2), any())).thenThrow(NotFoundException.CLIENT_NOT_FOUND);
+
+        CompletableFuture<Transaction> missing = asyncTransactionService.makeTransaction(2, Money.valueOf("1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> missing.get(1, TimeUnit.SECONDS));
+        assertSame(NotFoundException.CLIENT_NOT_FOUND, e.getCause());
+    }
+}
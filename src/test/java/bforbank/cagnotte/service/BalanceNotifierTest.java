@@ -0,0 +1,102 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * This class contains tests for the Server-Sent Events push of the balance and availability of a cagnotte.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BalanceNotifierTest {
+
+    private static final Pattern EVENT = Pattern.compile("event:(\\w+)\ndata:(.*)\n");
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * This test checks that a subscriber first gets the current state, then a balance event per committed transaction,
+     * and a single availability event when the third transaction brings the cagnotte to 10.
+     */
+    @Test
+    public void balanceAndAvailabilityChangesArePushed() throws Exception {
+        Integer clientId = clientService.createClient("BalanceStream", Money.ZERO).getId();
+        MvcResult result = mockMvc.perform(get("/transaction/streamAvailability").param("clientid", clientId.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(result, 2);
+
+        transactionService.makeTransaction(clientId, Money.valueOf("5"));
+        awaitEvents(result, 3);
+        transactionService.makeTransaction(clientId, Money.valueOf("3"));
+        awaitEvents(result, 4);
+        transactionService.makeTransaction(clientId, Money.valueOf("2"));
+        String events = awaitEvents(result, 6);
+
+        assertEquals("""
+                balance false 0.00
+                availability false 0.00
+                balance false 5.00
+                balance false 8.00
+                balance true 10.00
+                availability true 10.00
+                """, events);
+    }
+
+    /**
+     * This test checks that subscribing to an unknown client is rejected before the stream is opened.
+     */
+    @Test
+    public void unknownClientIsRejected() throws Exception {
+        mockMvc.perform(get("/transaction/streamAvailability").param("clientid", "-1"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Waits until the stream holds a number of events.
+     *
+     * @return One line per event, with its name, the availability and the cagnotte it carries.
+     */
+    private String awaitEvents(MvcResult result, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            StringBuilder events = new StringBuilder();
+            int found = 0;
+            Matcher matcher = EVENT.matcher(result.getResponse().getContentAsString());
+            while (matcher.find()) {
+                String data = matcher.group(2);
+                events.append(matcher.group(1))
+                        .append(' ').append(data.contains("\"available\":true"))
+                        .append(' ').append(data.replaceAll(".*\"cagnotte\":\"?([0-9.]+)\"?.*", "$1"))
+                        .append('\n');
+                found++;
+            }
+            if (found >= count) {
+                return events.toString();
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "Expected " + count + " events, got " + events);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package bforbank.cagnotte.service;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+public class ClientAuditTrigger implements Trigger {
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+        String stack = Arrays.stream(Thread.currentThread().getStackTrace())
+                .map(StackTraceElement::toString).filter(s -> s.contains("bforbank") || s.contains("hibernate.engine") || s.contains("Repository"))
+                .limit(12).collect(Collectors.joining(" | "));
+        System.out.println("AUDIT " + Thread.currentThread().getName() + " old " + Arrays.toString(oldRow) + " new " + Arrays.toString(newRow) + " conn " + System.identityHashCode(conn) + " :: " + stack);
+    }
+}
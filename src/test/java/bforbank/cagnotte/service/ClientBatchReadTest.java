@@ -0,0 +1,95 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class contains tests for the batch reads of the ClientService and TransactionService classes.
+ * It runs against the embedded H2 database and counts the repository calls through their metrics.
+ */
+@SpringBootTest
+public class ClientBatchReadTest {
+
+    private static final int CLIENTS = 200;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * This test checks that a page of clients is read with one query per list, whatever its size,
+     * and that the clients are returned once each, in request order, without the unknown ones.
+     */
+    @Test
+    public void pageOfClientsIsReadWithOneQueryPerList() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            ids.add(clientService.createClient("Batch " + i, Money.ofCents(i)).getId());
+        }
+        List<Integer> requested = new ArrayList<>(ids.subList(0, CLIENTS - 1));
+        Collections.reverse(requested);
+        requested.add(-1);
+        long findAllById = invocations("findAllById");
+        long findByNameIn = invocations("findByNameIn");
+
+        List<Client> clients = clientService.getClients(new ClientBatchRequest(requested,
+                List.of("Batch 0", "Batch " + (CLIENTS - 1), "Unknown")));
+
+        assertEquals(CLIENTS, clients.size());
+        assertEquals(ids.get(CLIENTS - 2), clients.get(0).getId());
+        assertEquals(ids.get(CLIENTS - 1), clients.get(CLIENTS - 1).getId());
+        assertEquals(Money.ofCents(CLIENTS - 2), clients.get(0).getCagnotte());
+        assertEquals(findAllById + 1, invocations("findAllById"));
+        assertEquals(findByNameIn + 1, invocations("findByNameIn"));
+    }
+
+    /**
+     * This test checks the availability of several cagnottes, and that oversized batches are rejected.
+     */
+    @Test
+    public void availabilityOfSeveralCagnottes() {
+        Integer available = clientService.createClient("Batch available", Money.ZERO).getId();
+        Integer unavailable = clientService.createClient("Batch unavailable", Money.valueOf("100")).getId();
+        for (int i = 0; i < 3; i++) {
+            transactionService.makeTransaction(available, Money.valueOf("5"));
+        }
+
+        Map<Integer, Boolean> availability = transactionService.getCagnottesAvailability(
+                new ClientBatchRequest(List.of(unavailable, -1), List.of("Batch available")));
+
+        assertEquals(List.of(unavailable, available), new ArrayList<>(availability.keySet()));
+        assertEquals(false, availability.get(unavailable));
+        assertEquals(true, availability.get(available));
+        List<Integer> tooMany = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            tooMany.add(i);
+        }
+        assertThrows(InvalidRequestException.class, () -> clientService.getClients(new ClientBatchRequest(tooMany, null)));
+    }
+
+    private long invocations(String method) {
+        Timer timer = meterRegistry.find("spring.data.repository.invocations")
+                .tags("repository", "ClientRepository", "method", method).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,65 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the ClientCache class.
+ * It runs against the embedded H2 database.
+ */
+@SpringBootTest
+public class ClientCacheTest {
+
+    @Autowired
+    private ClientCache clientCache;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * This test checks that lookups by id and name are served from the cache and that hits are counted.
+     */
+    @Test
+    public void lookupsAreServedFromTheCache() {
+        Client client = clientService.createClient("Cached", Money.valueOf("1"));
+        double hits = hits();
+
+        assertSame(client, clientService.getClientByIdOrName(client.getId(), null));
+        assertSame(client, clientService.getClientByIdOrName(null, "Cached"));
+
+        assertTrue(hits() >= hits + 2);
+        assertTrue(clientCache.findById(-1).isEmpty());
+    }
+
+    /**
+     * This test checks that a committed transaction evicts the client, so the new cagnotte is read from the database.
+     */
+    @Test
+    public void transactionEvictsTheClient() {
+        Integer clientId = clientService.createClient("Evicted", Money.valueOf("1")).getId();
+
+        transactionService.makeTransaction(clientId, Money.valueOf("2"));
+
+        Client reloaded = clientService.getClientByIdOrName(clientId, null);
+        assertEquals(Money.valueOf("3"), reloaded.getCagnotte());
+        assertEquals(1, reloaded.getTransactionCount());
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "clientsById").tag("result", "hit").functionCounter().count();
+    }
+}
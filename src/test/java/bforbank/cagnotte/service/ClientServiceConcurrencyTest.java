@@ -0,0 +1,79 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.repository.ClientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains concurrency tests for the ClientService class.
+ * It runs against the embedded H2 database and checks that a client name can only be created once.
+ */
+@SpringBootTest
+public class ClientServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    /**
+     * This test checks that out of N concurrent creations with the same name, exactly one succeeds.
+     */
+    @Test
+    public void concurrentCreationsWithSameNameCreateOneClient() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        clientService.createClient("Duplicate", Money.ZERO);
+                        return true;
+                    } catch (RuntimeException e) {
+                        assertEquals("Client already exists", e.getMessage());
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            for (Future<Boolean> future : futures) {
+                created += future.get() ? 1 : 0;
+            }
+            assertEquals(1, created);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(clientRepository.findByName("Duplicate").isPresent());
+    }
+
+    /**
+     * This test checks that creating a client with an existing name fails with the usual error.
+     */
+    @Test
+    public void creationWithExistingNameFails() {
+        clientService.createClient("Existing", Money.ZERO);
+
+        ConflictException e = assertThrows(ConflictException.class, () -> clientService.createClient("Existing", Money.valueOf("5")));
+        assertEquals("Client already exists", e.getMessage());
+    }
+}
@@ -0,0 +1,44 @@
+package bforbank.cagnotte.service;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Process appending transactions to a journal from several threads until it is killed.
+ * It prints a "sequence,clientId,amountCents;" line for each acknowledged record, then halts abruptly,
+ * without closing the journal, while appends are still in progress.
+ * It is started by TransactionJournalTest to simulate a crash.
+ */
+public class JournalCrashProcess {
+
+    private static final int THREADS = 4;
+
+    /**
+     * Appends transactions to the journal given as first argument, then halts after the number of milliseconds given as second argument.
+     *
+     * @param args The path of the journal file and the time before halting.
+     */
+    public static void main(String[] args) throws Exception {
+        TransactionJournal journal = new TransactionJournal(Path.of(args[0]), 1_000_000);
+        journal.recover(0);
+        PrintStream out = new PrintStream(System.out, false);
+        for (int i = 0; i < THREADS; i++) {
+            int clientId = i + 1;
+            Thread thread = new Thread(() -> {
+                while (true) {
+                    long amountCents = ThreadLocalRandom.current().nextLong(1, 100_000);
+                    long sequence = journal.append(clientId, amountCents).join();
+                    synchronized (out) {
+                        out.println(sequence + "," + clientId + "," + amountCents + ";");
+                        out.flush();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread.sleep(Long.parseLong(args[1]));
+        Runtime.getRuntime().halt(1);
+    }
+}
@@ -0,0 +1,194 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.config.TransactionCountVerifier;
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.LedgerSnapshot;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.LedgerSnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the ledger mode: append-only writes, balances computed from the client row
+ * and the ledger tail, and the compaction of the tail into snapshots.
+ * It runs against its own embedded H2 database, so that recreating the schema does not reset the id sequences
+ * of the application contexts of the other tests.
+ */
+@SpringBootTest(properties = {
+        "cagnotte.ledger.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:ledger;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1"
+})
+public class LedgerServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int DEPOSITS_PER_THREAD = 100;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private LedgerCompactor ledgerCompactor;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private LedgerSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private TransactionCountVerifier transactionCountVerifier;
+
+    /**
+     * This test checks that the tails checked before folding them at startup are found, and no longer once compacted.
+     */
+    @Test
+    public void tailsAreFoundUntilCompacted() {
+        Integer clientId = clientService.createClient("Ledger tail", Money.ZERO).getId();
+        transactionService.makeTransaction(clientId, Money.valueOf("1"));
+        assertTrue(ledgerService.hasLedgerTail());
+
+        ledgerCompactor.compactTails(1);
+        assertFalse(ledgerService.hasLedgerTail());
+    }
+
+    /**
+     * This test checks that deposits leave the client row untouched and are counted in the balance from the ledger tail.
+     */
+    @Test
+    public void depositsAreAppendedToTheTail() {
+        Integer clientId = clientService.createClient("Ledger", Money.valueOf("2.50")).getId();
+        transactionService.makeTransaction(clientId, Money.valueOf("3"));
+        transactionService.makeTransaction(clientId, Money.valueOf("3"));
+        assertFalse(transactionService.isCagnotteAvailable(clientId));
+        transactionService.makeTransaction(clientId, Money.valueOf("1.50"));
+
+        Client row = clientRepository.findById(clientId).orElseThrow();
+        assertEquals(Money.valueOf("2.50"), row.getCagnotte());
+        assertEquals(0, row.getTransactionCount());
+
+        Client client = clientService.getClientByIdOrName(clientId, null);
+        assertEquals(Money.valueOf("10.00"), client.getCagnotte());
+        assertEquals(3, client.getTransactionCount());
+        assertTrue(transactionService.isCagnotteAvailable(clientId));
+        assertTrue(transactionCountVerifier.verify().isEmpty());
+    }
+
+    /**
+     * This test checks that a batch read computes the balances of several clients from their ledger tails.
+     */
+    @Test
+    public void batchReadComputesTheBalances() {
+        Integer first = clientService.createClient("Ledger batch 1", Money.valueOf("1")).getId();
+        Integer second = clientService.createClient("Ledger batch 2", Money.ZERO).getId();
+        for (int i = 0; i < 3; i++) {
+            transactionService.makeTransaction(first, Money.valueOf("4"));
+        }
+
+        List<Client> clients = clientService.getClients(new ClientBatchRequest(List.of(second, first), null));
+
+        assertEquals(List.of(second, first), clients.stream().map(Client::getId).toList());
+        assertEquals(Money.ZERO, clients.get(0).getCagnotte());
+        assertEquals(Money.valueOf("13"), clients.get(1).getCagnotte());
+        assertEquals(Map.of(first, true, second, false),
+                transactionService.getCagnottesAvailability(new ClientBatchRequest(List.of(first, second), null)));
+    }
+
+    /**
+     * This test checks that a compaction folds the tail into the client row and records a snapshot,
+     * without changing the balance, and that later deposits go to a new tail.
+     */
+    @Test
+    public void compactionFoldsTheTailIntoASnapshot() {
+        Integer clientId = clientService.createClient("Compacted", Money.valueOf("1")).getId();
+        for (int i = 0; i < 5; i++) {
+            transactionService.makeTransaction(clientId, Money.valueOf("2"));
+        }
+
+        ledgerCompactor.compactTails(1);
+
+        Client row = clientRepository.findById(clientId).orElseThrow();
+        assertEquals(Money.valueOf("11"), row.getCagnotte());
+        assertEquals(5, row.getTransactionCount());
+        List<LedgerSnapshot> snapshots = snapshotRepository.findByClientIdOrderByIdAsc(clientId);
+        assertEquals(1, snapshots.size());
+        assertEquals(Money.valueOf("11"), snapshots.get(0).getBalance());
+        assertEquals(5, snapshots.get(0).getCompactedTransactions());
+        assertEquals(Money.valueOf("11"), clientService.getClientByIdOrName(clientId, null).getCagnotte());
+
+        transactionService.makeTransaction(clientId, Money.valueOf("0.01"));
+        Client client = clientService.getClientByIdOrName(clientId, null);
+        assertEquals(Money.valueOf("11.01"), client.getCagnotte());
+        assertEquals(6, client.getTransactionCount());
+        assertEquals(0, ledgerCompactor.compactTails(2));
+        assertTrue(transactionCountVerifier.verify().isEmpty());
+    }
+
+    /**
+     * This test checks that deposits made while the tail is being compacted are neither lost nor counted twice.
+     */
+    @Test
+    public void depositsDuringCompactionAreNeverLost() throws Exception {
+        Integer clientId = clientService.createClient("Compacting", Money.ZERO).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean depositing = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < DEPOSITS_PER_THREAD; j++) {
+                        transactionService.makeTransaction(clientId, Money.valueOf("0.01"));
+                    }
+                    return null;
+                }));
+            }
+            Future<?> compactions = executor.submit(() -> {
+                start.await();
+                while (depositing.get()) {
+                    ledgerCompactor.compactTails(1);
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            depositing.set(false);
+            compactions.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long expected = THREADS * DEPOSITS_PER_THREAD;
+        assertEquals(Money.ofCents(expected), clientService.getClientByIdOrName(clientId, null).getCagnotte());
+        ledgerCompactor.compactTails(1);
+        Client row = clientRepository.findById(clientId).orElseThrow();
+        assertEquals(Money.ofCents(expected), row.getCagnotte());
+        assertEquals(expected, row.getTransactionCount().longValue());
+        assertEquals(expected, snapshotRepository.findByClientIdOrderByIdAsc(clientId).stream()
+                .mapToLong(LedgerSnapshot::getCompactedTransactions).sum());
+    }
+}
@@ -0,0 +1,134 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.ChangeEvent;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * This class contains tests for the outbox and its relay, run against their own embedded H2 database.
+ * The scheduled relay is delayed by an hour, so the tests relay the outbox themselves.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "cagnotte.outbox.enabled=true",
+        "cagnotte.outbox.sink=queue",
+        "cagnotte.outbox.batch-size=2",
+        "cagnotte.outbox.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class OutboxRelayTest {
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private QueueOutboxSink queueSink;
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * This test checks that each committed transaction is published once, with consecutive offsets across batches,
+     * that the outbox is emptied, and that a consumer resumes from its last offset.
+     */
+    @Test
+    public void transactionsArePublishedWithOffsets() throws Exception {
+        long before = lastOffset();
+        Integer clientId = clientService.createClient("Outbox", Money.ZERO).getId();
+        List<Integer> transactionIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            transactionIds.add(transactionService.makeTransaction(clientId, Money.valueOf(Integer.toString(i))).getId());
+        }
+        assertEquals(3, outboxRepository.count());
+
+        assertEquals(3, outboxRelay.relay());
+        assertEquals(0, outboxRepository.count());
+        assertEquals(0, outboxRelay.relay());
+        List<ChangeEvent> events = queueSink.poll(before, 10, Duration.ZERO);
+        assertEquals(3, events.size());
+        long first = events.get(0).getOffset();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(first + i, events.get(i).getOffset());
+            assertEquals(transactionIds.get(i), events.get(i).getTransactionId());
+            assertEquals(clientId, events.get(i).getClientId());
+            assertEquals(Money.valueOf(Integer.toString(i + 1)), events.get(i).getAmount());
+        }
+
+        Transaction next = transactionService.makeTransaction(clientId, Money.valueOf("4"));
+        assertEquals(1, outboxRelay.relay());
+        List<ChangeEvent> resumed = queueSink.poll(first + 2, 10, Duration.ZERO);
+        assertEquals(1, resumed.size());
+        assertEquals(first + 3, resumed.get(0).getOffset());
+        assertEquals(next.getId(), resumed.get(0).getTransactionId());
+
+        mockMvc.perform(get("/events").param("after", Long.toString(first)).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].offset").value(first + 1))
+                .andExpect(jsonPath("$[1].transactionId").value(transactionIds.get(2)));
+        mockMvc.perform(get("/events/stream")).andExpect(status().isNotFound());
+    }
+
+    /**
+     * This test checks that the file sink appends one JSON line per event, with its offset.
+     */
+    @Test
+    public void fileSinkAppendsOneLinePerEvent(@TempDir Path directory) throws Exception {
+        Integer clientId = clientService.createClient("Outbox file", Money.ZERO).getId();
+        transactionService.makeTransaction(clientId, Money.valueOf("1.50"));
+        long before = lastOffset();
+        outboxRelay.relay();
+        ChangeEvent event = queueSink.poll(before, 1, Duration.ZERO).get(0);
+
+        Path file = directory.resolve("events/events.ndjson");
+        FileOutboxSink fileSink = new FileOutboxSink(file.toString(), objectMapper);
+        fileSink.publish(List.of(event));
+        fileSink.publish(List.of(event));
+        fileSink.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        JsonNode line = objectMapper.readTree(lines.get(0));
+        assertEquals(event.getOffset(), line.get("offset").asLong());
+        assertEquals(clientId, line.get("clientId").asInt());
+        assertEquals(1.5, line.get("amount").asDouble());
+    }
+
+    private long lastOffset() throws InterruptedException {
+        List<ChangeEvent> events = queueSink.poll(0, 10_000, Duration.ZERO);
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getOffset();
+    }
+}
@@ -0,0 +1,231 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.config.SchemaVerifier;
+import bforbank.cagnotte.config.TransactionCountVerifier;
+import bforbank.cagnotte.entities.BulkImportResult;
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.ClientBatchRequest;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionStatistics;
+import bforbank.cagnotte.exception.ConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the sharding mode, with three embedded H2 databases standing in for the shards.
+ * It checks that clients and their transactions are written to the shard of the client, and that lookups by name,
+ * batch reads and global statistics see the clients of every shard.
+ */
+@SpringBootTest(properties = {
+        "cagnotte.sharding.enabled=true",
+        "cagnotte.sharding.urls=" + ShardingTest.SHARD_0 + "," + ShardingTest.SHARD_1 + "," + ShardingTest.SHARD_2
+})
+public class ShardingTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:shard0;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:shard1;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2 = "jdbc:h2:mem:shard2;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1";
+    private static final List<String> SHARDS = List.of(SHARD_0, SHARD_1, SHARD_2);
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionStatisticsService statisticsService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private TransactionBatchWriter batchWriter;
+
+    @Autowired
+    private TransactionImportService importService;
+
+    @Autowired
+    private SchemaVerifier schemaVerifier;
+
+    @Autowired
+    private TransactionCountVerifier transactionCountVerifier;
+
+    /**
+     * This test checks that each client and its transactions live on the shard of the client only,
+     * and that reads by id, by name, in batch and across all clients find them.
+     */
+    @Test
+    public void clientsAndTransactionsAreRoutedToTheirShard() throws SQLException {
+        // The other tests write to the same shards, so the statistics across clients are compared with the ones before
+        TransactionStatistics before = statisticsService.getStatistics(null);
+        List<Client> clients = new ArrayList<>();
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            Client client = clientService.createClient("Sharded-" + i, Money.ZERO);
+            int shard = shardRouter.shardOf(client.getName());
+            assertEquals(shard, shardRouter.shardOf(client.getId()));
+            usedShards.add(shard);
+            clients.add(client);
+            transactionService.makeTransaction(client.getId(), Money.valueOf("6"));
+            transactionService.makeTransaction(client.getId(), Money.valueOf("6"));
+        }
+        assertTrue(usedShards.size() > 1);
+
+        for (Client client : clients) {
+            for (int shard = 0; shard < SHARDS.size(); shard++) {
+                int expected = shard == shardRouter.shardOf(client.getId()) ? 1 : 0;
+                assertEquals(expected, count(SHARDS.get(shard), "select count(*) from client where id = ?", client.getId()));
+                assertEquals(2 * expected, count(SHARDS.get(shard), "select count(*) from transaction where client_id = ?", client.getId()));
+            }
+            Client found = clientService.getClientByIdOrName(null, client.getName());
+            assertEquals(client.getId(), found.getId());
+            assertEquals(Money.valueOf("12"), found.getCagnotte());
+            List<Transaction> transactions = transactionService.getTransactions(client.getId());
+            assertEquals(2, transactions.size());
+        }
+
+        ClientBatchRequest request = new ClientBatchRequest();
+        request.setIds(clients.subList(0, 6).stream().map(Client::getId).toList());
+        request.setNames(clients.subList(6, 12).stream().map(Client::getName).toList());
+        assertEquals(clients.stream().map(Client::getId).toList(),
+                clientService.getClients(request).stream().map(Client::getId).toList());
+
+        TransactionStatistics statistics = statisticsService.getStatistics(null);
+        assertEquals(before.getCount() + 24, statistics.getCount());
+        assertEquals(before.getSum().plus(Money.valueOf("144")), statistics.getSum());
+
+        assertThrows(ConflictException.class, () -> clientService.createClient("Sharded-0", Money.ZERO));
+    }
+
+    /**
+     * This test checks that the schema of every shard is created with its indexes, and that the startup checks cover every shard.
+     */
+    @Test
+    public void everyShardHasTheSchema() {
+        for (int shard = 0; shard < SHARDS.size(); shard++) {
+            assertEquals(List.of(), shardRouter.onShard(shard, () -> {
+                try {
+                    return schemaVerifier.findMissingIndexes();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        assertEquals(List.of(), transactionCountVerifier.verify());
+    }
+
+    /**
+     * This test checks that when a group commit spanning several shards fails on one shard,
+     * the transactions of the committed shard are completed once and only the ones of the failed shard are retried,
+     * so no cagnotte is credited twice.
+     */
+    @Test
+    public void groupCommitRetriesOnlyTheFailedShard() throws InterruptedException {
+        List<Client> clients = clientsOnTwoShards("PartialCommit-");
+        Client committed = clients.get(0);
+        Client failed = clients.get(1);
+        transactionService.makeTransaction(failed.getId(), Money.valueOf("5"), "partial-commit");
+
+        // The transactions are queued before the writer thread starts, so that they are committed in the same batch
+        TransactionBatcher batcher = new TransactionBatcher(batchWriter, new SimpleMeterRegistry(), true, 10, 100, 10);
+        CompletableFuture<Transaction> first = batcher.submit(transaction(committed.getId(), "7", null));
+        // The idempotency key is already used on the shard of this client, so its shard fails
+        CompletableFuture<Transaction> second = batcher.submit(transaction(failed.getId(), "5", "partial-commit"));
+        batcher.start();
+        try {
+            assertTrue(first.join().getId() != null);
+            CompletionException e = assertThrows(CompletionException.class, second::join);
+            assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+        } finally {
+            batcher.stop();
+        }
+
+        assertEquals(Money.valueOf("7"), clientService.getClientByIdOrName(committed.getId(), null).getCagnotte());
+        assertEquals(1, transactionService.getTransactions(committed.getId()).size());
+        assertEquals(Money.valueOf("5"), clientService.getClientByIdOrName(failed.getId(), null).getCagnotte());
+        assertEquals(1, transactionService.getTransactions(failed.getId()).size());
+    }
+
+    /**
+     * This test checks that when a bulk import chunk spanning several shards fails on one shard,
+     * only the lines of that shard are rejected, and the lines of the committed shard are accepted.
+     */
+    @Test
+    public void bulkImportRejectsOnlyTheLinesOfTheFailedShard() throws IOException {
+        List<Client> clients = clientsOnTwoShards("PartialImport-");
+        Integer committed = clients.get(0).getId();
+        Integer failed = clients.get(1).getId();
+        // The two amounts of the second client overflow its sum in cents, so its shard fails
+        String body = committed + ",3.0\n" + failed + ",50000000000000000\n" + committed + ",4.0\n" + failed + ",50000000000000000\n";
+
+        BulkImportResult result = importService.importTransactions(new StringReader(body), TransactionImportService.Format.CSV);
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(2, result.getRejected());
+        assertEquals(List.of(2L, 4L), result.getErrors().stream().map(BulkImportResult.LineError::getLine).toList());
+        assertEquals(Money.valueOf("7"), clientService.getClientByIdOrName(committed, null).getCagnotte());
+        assertEquals(Money.ZERO, clientService.getClientByIdOrName(failed, null).getCagnotte());
+        assertEquals(0, transactionService.getTransactions(failed).size());
+    }
+
+    /**
+     * Creates clients until one is on shard 0 and one on another shard.
+     *
+     * @return The client on shard 0, then the client on another shard.
+     */
+    private List<Client> clientsOnTwoShards(String prefix) {
+        Client first = null;
+        Client second = null;
+        for (int i = 0; first == null || second == null; i++) {
+            Client client = clientService.createClient(prefix + i, Money.ZERO);
+            if (shardRouter.shardOf(client.getId()) == 0) {
+                first = first == null ? client : first;
+            } else {
+                second = second == null ? client : second;
+            }
+        }
+        return List.of(first, second);
+    }
+
+    private static Transaction transaction(Integer clientId, String amount, String idempotencyKey) {
+        Transaction transaction = new Transaction();
+        transaction.setClientId(clientId);
+        transaction.setAmount(Money.valueOf(amount));
+        transaction.setIdempotencyKey(idempotencyKey);
+        return transaction;
+    }
+
+    private static long count(String url, String sql, Integer id) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, id);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
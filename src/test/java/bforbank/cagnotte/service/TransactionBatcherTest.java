@@ -0,0 +1,83 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.exception.NotFoundException;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class contains tests for the group-commit mode of the TransactionService class.
+ * It runs against the embedded H2 database with the group-commit pipeline enabled.
+ */
+@SpringBootTest(properties = {
+        "cagnotte.transaction.group-commit.enabled=true",
+        "cagnotte.transaction.group-commit.batch-size=20",
+        "cagnotte.transaction.group-commit.max-linger-ms=20"
+})
+public class TransactionBatcherTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    /**
+     * This test checks that parallel deposits spread over two clients are all committed and credited.
+     */
+    @Test
+    public void parallelDepositsAreCommittedInBatches() throws Exception {
+        Integer first = clientService.createClient("Batch1", Money.ZERO).getId();
+        Integer second = clientService.createClient("Batch2", Money.valueOf("5")).getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                Integer clientId = i % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> assertNotNull(transactionService.makeTransaction(clientId, Money.valueOf("2")).getId())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Client firstClient = clientRepository.findById(first).orElseThrow();
+        Client secondClient = clientRepository.findById(second).orElseThrow();
+        assertEquals(Money.valueOf("200"), firstClient.getCagnotte());
+        assertEquals(Money.valueOf("205"), secondClient.getCagnotte());
+        assertEquals(100, transactionRepository.countByClientId(first));
+        assertEquals(100, transactionRepository.countByClientId(second));
+    }
+
+    /**
+     * This test checks that a transaction for an unknown client fails with the usual error in group-commit mode.
+     */
+    @Test
+    public void unknownClientIsRejected() {
+        NotFoundException e = assertThrows(NotFoundException.class, () -> transactionService.makeTransaction(-42, Money.valueOf("1")));
+        assertEquals("Client not found", e.getMessage());
+    }
+}
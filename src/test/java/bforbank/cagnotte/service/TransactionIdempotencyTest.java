@@ -0,0 +1,128 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.exception.ConflictException;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class contains tests for the idempotency keys of the TransactionService class.
+ * It runs against the embedded H2 database and checks that a retried transaction is never written twice.
+ */
+@SpringBootTest
+public class TransactionIdempotencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    /**
+     * This test checks that a retry gets the original transaction, and that a key cannot be reused for another transaction.
+     */
+    @Test
+    public void retryReturnsTheOriginalTransaction() {
+        Integer clientId = clientService.createClient("Idempotent", Money.ZERO).getId();
+        Transaction first = transactionService.makeTransaction(clientId, Money.valueOf("5"), "idempotent-1");
+        Transaction retry = transactionService.makeTransaction(clientId, Money.valueOf("5"), "idempotent-1");
+
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(1, transactionRepository.countByClientId(clientId));
+        assertEquals(Money.valueOf("5"), clientRepository.findById(clientId).orElseThrow().getCagnotte());
+        assertThrows(ConflictException.class, () -> transactionService.makeTransaction(clientId, Money.valueOf("6"), "idempotent-1"));
+        assertThrows(InvalidRequestException.class, () -> transactionService.makeTransaction(clientId, Money.valueOf("5"), " "));
+        assertThrows(InvalidRequestException.class, () -> transactionService.makeTransaction(clientId, Money.valueOf("5"), "k".repeat(256)));
+    }
+
+    /**
+     * This test checks that idempotency keys are scoped to the client: another client using the same key
+     * makes its own transaction, and a retry of each client gets its own transaction back.
+     */
+    @Test
+    public void keysAreScopedToTheClient() {
+        Integer firstClient = clientService.createClient("ScopedKey-1", Money.ZERO).getId();
+        Integer secondClient = clientService.createClient("ScopedKey-2", Money.ZERO).getId();
+        Transaction first = transactionService.makeTransaction(firstClient, Money.valueOf("4"), "scoped-key");
+        Transaction second = transactionService.makeTransaction(secondClient, Money.valueOf("4"), "scoped-key");
+
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(first.getId(), transactionService.makeTransaction(firstClient, Money.valueOf("4"), "scoped-key").getId());
+        assertEquals(second.getId(), transactionService.makeTransaction(secondClient, Money.valueOf("4"), "scoped-key").getId());
+        assertEquals(Money.valueOf("4"), clientRepository.findById(firstClient).orElseThrow().getCagnotte());
+        assertEquals(Money.valueOf("4"), clientRepository.findById(secondClient).orElseThrow().getCagnotte());
+    }
+
+    /**
+     * This test checks that a retry whose key is no longer cached, for instance after a restart,
+     * is rejected by the unique column and gets the original transaction without crediting the cagnotte again.
+     */
+    @Test
+    public void retryOfAnUncachedKeyIsRejectedByTheDatabase() {
+        Integer clientId = clientService.createClient("Restarted", Money.ZERO).getId();
+        Transaction original = new Transaction();
+        original.setClientId(clientId);
+        original.setAmount(Money.valueOf("3"));
+        original.setSnapshotId(Transaction.APPLIED_ON_WRITE);
+        original.setIdempotencyKey("before-restart");
+        transactionRepository.save(original);
+
+        Transaction retry = transactionService.makeTransaction(clientId, Money.valueOf("3"), "before-restart");
+
+        assertEquals(original.getId(), retry.getId());
+        assertEquals(1, transactionRepository.countByClientId(clientId));
+        assertEquals(Money.ZERO, clientRepository.findById(clientId).orElseThrow().getCagnotte());
+    }
+
+    /**
+     * This test checks that concurrent retries of the same request make a single transaction.
+     */
+    @Test
+    public void concurrentRetriesMakeASingleTransaction() throws Exception {
+        Integer clientId = clientService.createClient("Retried", Money.ZERO).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Transaction>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return transactionService.makeTransaction(clientId, Money.valueOf("2"), "concurrent-retry");
+                }));
+            }
+            start.countDown();
+            Integer id = futures.get(0).get().getId();
+            for (Future<Transaction> future : futures) {
+                assertEquals(id, future.get().getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, transactionRepository.countByClientId(clientId));
+        assertEquals(Money.valueOf("2"), clientRepository.findById(clientId).orElseThrow().getCagnotte());
+    }
+}
@@ -0,0 +1,99 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.BulkImportResult;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class contains tests for the TransactionImportService class.
+ * It runs against the embedded H2 database with a small chunk size so that several chunks are written.
+ */
+@SpringBootTest(properties = "cagnotte.transaction.bulk.chunk-size=2")
+public class TransactionImportServiceTest {
+
+    @Autowired
+    private TransactionImportService transactionImportService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    /**
+     * This test checks that valid NDJSON lines are written and invalid ones are reported with their line number.
+     */
+    @Test
+    public void importNdjson() throws IOException {
+        Integer clientId = clientService.createClient("BulkJson", Money.ZERO).getId();
+        String body = "{\"clientid\": " + clientId + ", \"amount\": 10.0}\n"
+                + "{\"clientid\": " + clientId + "}\n"
+                + "not json\n"
+                + "\n"
+                + "{\"clientId\": " + clientId + ", \"amount\": 2.5}\n"
+                + "{\"clientid\": -1, \"amount\": 1.0}\n"
+                + "{\"clientid\": " + clientId + ", \"amount\": 1.5}\n";
+
+        BulkImportResult result = transactionImportService.importTransactions(new StringReader(body), TransactionImportService.Format.NDJSON);
+
+        assertEquals(3, result.getAccepted());
+        assertEquals(3, result.getRejected());
+        assertEquals(2, result.getErrors().get(0).getLine());
+        assertEquals("Amount cannot be null", result.getErrors().get(0).getError());
+        assertEquals(3, result.getErrors().get(1).getLine());
+        assertEquals("Malformed line", result.getErrors().get(1).getError());
+        assertEquals(6, result.getErrors().get(2).getLine());
+        assertEquals("Client not found", result.getErrors().get(2).getError());
+        assertEquals(Money.valueOf("14"), clientRepository.findById(clientId).orElseThrow().getCagnotte());
+        assertEquals(3, transactionRepository.countByClientId(clientId));
+    }
+
+    /**
+     * This test checks that a CSV body with a header line is imported.
+     */
+    @Test
+    public void importCsv() throws IOException {
+        Integer clientId = clientService.createClient("BulkCsv", Money.valueOf("1")).getId();
+        String body = "clientid,amount\n" + clientId + ",4.0\n," + "3.0\n" + clientId + ",5.0\n";
+
+        BulkImportResult result = transactionImportService.importTransactions(new StringReader(body), TransactionImportService.Format.CSV);
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getRejected());
+        assertEquals("Clientid cannot be null", result.getErrors().get(0).getError());
+        assertEquals(Money.valueOf("10"), clientRepository.findById(clientId).orElseThrow().getCagnotte());
+    }
+
+    /**
+     * This test checks that the lines of a chunk that cannot be written are rejected with a generic reason,
+     * without the database error, and that the other chunks are still written.
+     */
+    @Test
+    public void failedChunkIsRejectedWithGenericReason() throws IOException {
+        Integer clientId = clientService.createClient("BulkOverflow", Money.ZERO).getId();
+        // The two amounts of the first chunk overflow the sum of the chunk in cents
+        String body = clientId + ",50000000000000000\n" + clientId + ",50000000000000000\n" + clientId + ",3.0\n";
+
+        BulkImportResult result = transactionImportService.importTransactions(new StringReader(body), TransactionImportService.Format.CSV);
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(2, result.getRejected());
+        assertEquals(1, result.getErrors().get(0).getLine());
+        assertEquals(TransactionImportService.WRITE_FAILED, result.getErrors().get(0).getError());
+        assertEquals(2, result.getErrors().get(1).getLine());
+        assertEquals(TransactionImportService.WRITE_FAILED, result.getErrors().get(1).getError());
+        assertEquals(Money.valueOf("3"), clientRepository.findById(clientId).orElseThrow().getCagnotte());
+    }
+}
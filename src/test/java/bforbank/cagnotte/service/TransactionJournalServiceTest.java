@@ -0,0 +1,134 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.JournalCheckpointRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * This class contains tests for the journal mode of the TransactionService class:
+ * acknowledged transactions are drained to the database, and replayed on startup after a crash.
+ * It runs against its own embedded H2 database and a journal file in a temporary directory.
+ */
+@SpringBootTest(properties = {
+        "cagnotte.transaction.journal.enabled=true",
+        "cagnotte.transaction.journal.capacity=1000",
+        "cagnotte.transaction.journal.drain-batch-size=50",
+        "spring.datasource.url=jdbc:h2:mem:journal;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1"
+})
+public class TransactionJournalServiceTest {
+
+    private static Path journalFile;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionJournalService journalService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalCheckpointRepository checkpointRepository;
+
+    /**
+     * This method puts the journal file in a new temporary directory.
+     *
+     * @param registry The registry of the properties of the application context.
+     */
+    @DynamicPropertySource
+    static void journalProperties(DynamicPropertyRegistry registry) throws IOException {
+        journalFile = Files.createTempDirectory("cagnotte-journal").resolve("transactions.journal");
+        registry.add("cagnotte.transaction.journal.file", journalFile::toString);
+    }
+
+    /**
+     * This test checks that acknowledged transactions are written to the database by the drainer.
+     */
+    @Autowired
+    private org.springframework.jdbc.core.JdbcTemplate auditJdbc;
+
+    @org.junit.jupiter.api.BeforeEach
+    public void audit() {
+        auditJdbc.execute("create trigger if not exists client_audit after update on client for each row call \"bforbank.cagnotte.service.ClientAuditTrigger\"");
+    }
+
+    @Test
+    public void acknowledgedTransactionsAreDrained() throws InterruptedException {
+        Integer clientId = clientService.createClient("Journaled", Money.ZERO).getId();
+        for (int i = 0; i < 120; i++) {
+            Transaction transaction = transactionService.makeTransaction(clientId, Money.valueOf("0.50"));
+            assertNull(transaction.getId());
+        }
+
+        awaitCagnotte(clientId, Money.valueOf("60.00"));
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertEquals(120, client.getTransactionCount());
+        assertEquals(120, transactionRepository.countByClientId(clientId));
+    }
+
+    /**
+     * This test simulates a crash: transactions are acknowledged by a journal that is closed without being drained.
+     * On restart, they are all replayed before the service accepts new transactions, and replaying again writes nothing.
+     */
+    @Test
+    public void acknowledgedTransactionsAreReplayedAfterACrash() throws Exception {
+        Integer clientId = clientService.createClient("Replayed", Money.ZERO).getId();
+        transactionService.makeTransaction(clientId, Money.valueOf("1"));
+        journalService.stop();
+
+        long checkpoint = checkpointRepository.findById(journalFile.toString()).orElseThrow().getSequence();
+        try (TransactionJournal crashed = new TransactionJournal(journalFile, 1000)) {
+            crashed.recover(checkpoint);
+            for (int i = 0; i < 75; i++) {
+                crashed.append(clientId, 200).get(5, TimeUnit.SECONDS);
+            }
+        }
+
+        journalService.start();
+        assertEquals(Money.valueOf("151"), clientRepository.findById(clientId).orElseThrow().getCagnotte());
+        assertEquals(checkpoint + 75, checkpointRepository.findById(journalFile.toString()).orElseThrow().getSequence());
+
+        journalService.stop();
+        journalService.start();
+        transactionService.makeTransaction(clientId, Money.valueOf("1"));
+        awaitCagnotte(clientId, Money.valueOf("152"));
+        assertEquals(77, clientRepository.findById(clientId).orElseThrow().getTransactionCount());
+    }
+
+    private void awaitCagnotte(Integer clientId, Money expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!expected.equals(clientRepository.findById(clientId).orElseThrow().getCagnotte())
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        if (!expected.equals(clientRepository.findById(clientId).orElseThrow().getCagnotte())) {
+            Thread.getAllStackTraces().forEach((t, st) -> { if (t.getName().contains("journal") || t.getName().contains("notifier")) { System.out.println("DUMP " + t.getName() + " " + t.getState()); for (StackTraceElement e : st) System.out.println("DUMP   " + e); } });
+            System.out.println("DUMP main tx " + org.springframework.transaction.support.TransactionSynchronizationManager.isActualTransactionActive() + " sync " + org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive() + " resources " + org.springframework.transaction.support.TransactionSynchronizationManager.getResourceMap() + " shard " + bforbank.cagnotte.config.ShardContext.getCurrentShard());
+            System.out.println("DUMP client " + clientId + " row " + clientRepository.findById(clientId).orElseThrow().getCagnotte() + " count " + clientRepository.findById(clientId).orElseThrow().getTransactionCount() + " tx " + transactionRepository.countByClientId(clientId));
+        }
+        assertEquals(expected, clientRepository.findById(clientId).orElseThrow().getCagnotte());
+    }
+}
@@ -0,0 +1,174 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class contains tests for the TransactionJournal class: recovery of the acknowledged records
+ * after a crash, detection of torn records and reuse of the slots of released records.
+ */
+public class TransactionJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * This test checks that the acknowledged records of a journal that was not closed are recovered, in order,
+     * and that new records are numbered after them.
+     */
+    @Test
+    public void acknowledgedRecordsAreRecovered() throws Exception {
+        Path file = directory.resolve("transactions.journal");
+        TransactionJournal crashed = new TransactionJournal(file, 100);
+        crashed.recover(0);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, crashed.append(i, i * 100L).get(5, TimeUnit.SECONDS));
+        }
+
+        try (TransactionJournal journal = new TransactionJournal(file, 100)) {
+            List<TransactionJournal.JournalRecord> recovered = journal.recover(4);
+            assertEquals(6, recovered.size());
+            assertEquals(new TransactionJournal.JournalRecord(5, 5, 500), recovered.get(0));
+            assertEquals(recovered, journal.read(4, 100));
+            assertEquals(11, journal.append(1, 1).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * This test checks that the records pending when the journal is reopened with a larger capacity
+     * are still read in order, and that the larger capacity is applied once no record is pending.
+     */
+    @Test
+    public void pendingRecordsAreReadAfterTheCapacityIsRaised() throws Exception {
+        Path file = directory.resolve("transactions.journal");
+        try (TransactionJournal journal = new TransactionJournal(file, 4)) {
+            journal.recover(0);
+            for (int i = 1; i <= 6; i++) {
+                journal.append(i, i).get(5, TimeUnit.SECONDS);
+                journal.release(i - 2);
+            }
+        }
+
+        try (TransactionJournal journal = new TransactionJournal(file, 10)) {
+            assertEquals(4, journal.recover(2).size());
+            assertEquals(List.of(3L, 4L, 5L, 6L), journal.read(2, 10).stream()
+                    .map(TransactionJournal.JournalRecord::sequence).toList());
+            assertThrows(ServiceUnavailableException.class, () -> journal.append(7, 7));
+            journal.release(6);
+        }
+
+        try (TransactionJournal journal = new TransactionJournal(file, 10)) {
+            assertTrue(journal.recover(6).isEmpty());
+            for (int i = 7; i <= 16; i++) {
+                journal.append(i, i).get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(10, journal.read(6, 20).size());
+            assertThrows(ServiceUnavailableException.class, () -> journal.append(17, 17));
+        }
+    }
+
+    /**
+     * This test checks that a record whose bytes were not all written is ignored by the recovery.
+     */
+    @Test
+    public void tornRecordIsIgnored() throws Exception {
+        Path file = directory.resolve("transactions.journal");
+        try (TransactionJournal journal = new TransactionJournal(file, 100)) {
+            journal.recover(0);
+            for (int i = 1; i <= 3; i++) {
+                journal.append(1, 100).get(5, TimeUnit.SECONDS);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, 999_999), 2L * TransactionJournal.RECORD_SIZE + 12);
+        }
+
+        try (TransactionJournal journal = new TransactionJournal(file, 100)) {
+            List<TransactionJournal.JournalRecord> recovered = journal.recover(0);
+            assertEquals(List.of(1L, 2L), recovered.stream().map(TransactionJournal.JournalRecord::sequence).toList());
+            assertEquals(3, journal.append(1, 100).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * This test checks that a full journal rejects appends until records are released, and that released slots are reused.
+     */
+    @Test
+    public void releasedSlotsAreReused() throws Exception {
+        try (TransactionJournal journal = new TransactionJournal(directory.resolve("transactions.journal"), 4)) {
+            journal.recover(0);
+            for (int i = 1; i <= 4; i++) {
+                journal.append(i, i).get(5, TimeUnit.SECONDS);
+            }
+            assertThrows(ServiceUnavailableException.class, () -> journal.append(5, 5));
+
+            journal.release(2);
+            journal.append(5, 5).get(5, TimeUnit.SECONDS);
+            journal.append(6, 6).get(5, TimeUnit.SECONDS);
+            assertThrows(ServiceUnavailableException.class, () -> journal.append(7, 7));
+            assertEquals(List.of(new TransactionJournal.JournalRecord(3, 3, 3), new TransactionJournal.JournalRecord(4, 4, 4),
+                    new TransactionJournal.JournalRecord(5, 5, 5), new TransactionJournal.JournalRecord(6, 6, 6)),
+                    journal.read(2, 10));
+        }
+    }
+
+    /**
+     * This test kills a process while it appends to a journal from several threads,
+     * and checks that every record it acknowledged before being killed is recovered with its content.
+     */
+    @Test
+    public void noAcknowledgedRecordIsLostWhenTheProcessIsKilled() throws Exception {
+        Path file = directory.resolve("transactions.journal");
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), JournalCrashProcess.class.getName(), file.toString(), "1000")
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        Map<Long, TransactionJournal.JournalRecord> acknowledged = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // The last line may be cut by the kill: only complete lines are acknowledgements
+                if (line.endsWith(";")) {
+                    String[] fields = line.substring(0, line.length() - 1).split(",");
+                    long sequence = Long.parseLong(fields[0]);
+                    acknowledged.put(sequence, new TransactionJournal.JournalRecord(sequence,
+                            Integer.parseInt(fields[1]), Long.parseLong(fields[2])));
+                }
+            }
+        }
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(1, process.exitValue());
+        assertTrue(acknowledged.size() > 100, "Only " + acknowledged.size() + " records acknowledged");
+
+        try (TransactionJournal journal = new TransactionJournal(file, 1_000_000)) {
+            Map<Long, TransactionJournal.JournalRecord> recovered = new HashMap<>();
+            for (TransactionJournal.JournalRecord record : journal.recover(0)) {
+                recovered.put(record.sequence(), record);
+            }
+            List<Long> lost = new ArrayList<>();
+            acknowledged.forEach((sequence, record) -> {
+                if (!record.equals(recovered.get(sequence))) {
+                    lost.add(sequence);
+                }
+            });
+            assertTrue(lost.isEmpty(), "Acknowledged records lost: " + lost);
+        }
+    }
+}
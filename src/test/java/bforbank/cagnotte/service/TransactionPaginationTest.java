@@ -0,0 +1,78 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionPage;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class contains tests for the paginated and streamed retrieval of transactions in the TransactionService class.
+ * It runs against the embedded H2 database.
+ */
+@SpringBootTest
+public class TransactionPaginationTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientService clientService;
+
+    /**
+     * This test checks that walking the pages with the next cursor returns every transaction once, in id order.
+     */
+    @Test
+    public void pagesCoverTheWholeHistory() {
+        Integer clientId = clientService.createClient("Paged", Money.ZERO).getId();
+        Integer otherId = clientService.createClient("PagedOther", Money.ZERO).getId();
+        for (int i = 1; i <= 7; i++) {
+            transactionService.makeTransaction(clientId, Money.ofCents(i * 100L));
+            transactionService.makeTransaction(otherId, Money.valueOf("100"));
+        }
+
+        List<Money> amounts = new ArrayList<>();
+        Integer after = null;
+        int pages = 0;
+        do {
+            TransactionPage page = transactionService.getTransactions(clientId, after, 3);
+            page.getTransactions().forEach(transaction -> amounts.add(transaction.getAmount()));
+            after = page.getNext();
+            pages++;
+        } while (after != null);
+
+        assertEquals(IntStream.rangeClosed(1, 7).mapToObj(i -> Money.ofCents(i * 100L)).toList(), amounts);
+        assertEquals(3, pages);
+        assertNull(transactionService.getTransactions(clientId, null, 10).getNext());
+        assertThrows(InvalidRequestException.class, () -> transactionService.getTransactions(clientId, null, 0));
+    }
+
+    /**
+     * This test checks that streaming returns the whole history of the client, in id order.
+     */
+    @Test
+    public void streamReturnsTheWholeHistory() {
+        Integer clientId = clientService.createClient("Streamed", Money.ZERO).getId();
+        for (int i = 1; i <= 5; i++) {
+            transactionService.makeTransaction(clientId, Money.ofCents(i * 100L));
+        }
+
+        List<Transaction> streamed = new ArrayList<>();
+        transactionService.streamTransactions(clientId, streamed::add);
+
+        assertEquals(5, streamed.size());
+        assertEquals(Money.valueOf("5"), streamed.get(4).getAmount());
+        assertThrows(NotFoundException.class, () -> transactionService.checkClientExists(-1));
+    }
+}
@@ -0,0 +1,76 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Client;
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.repository.ClientRepository;
+import bforbank.cagnotte.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class contains concurrency tests for the TransactionService class.
+ * It runs against the embedded H2 database and checks that parallel deposits are never lost.
+ */
+@SpringBootTest
+public class TransactionServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int DEPOSITS_PER_THREAD = 50;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    /**
+     * This test checks that N parallel deposits on the same client always sum up to the expected cagnotte.
+     */
+    @Test
+    public void parallelDepositsOnSameClientAreNeverLost() throws Exception {
+        Client client = clientService.createClient("Concurrent", Money.ZERO);
+        Integer clientId = client.getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < DEPOSITS_PER_THREAD; j++) {
+                        transactionService.makeTransaction(clientId, Money.valueOf("1"));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Client reloaded = clientRepository.findById(clientId).orElseThrow();
+        assertEquals(Money.ofCents(THREADS * DEPOSITS_PER_THREAD * 100L), reloaded.getCagnotte());
+        assertEquals(THREADS * DEPOSITS_PER_THREAD, transactionRepository.countByClientId(clientId));
+        assertEquals(THREADS * DEPOSITS_PER_THREAD, reloaded.getTransactionCount());
+    }
+}
@@ -0,0 +1,102 @@
+package bforbank.cagnotte.service;
+
+import bforbank.cagnotte.entities.Money;
+import bforbank.cagnotte.entities.Transaction;
+import bforbank.cagnotte.entities.TransactionStatistics;
+import bforbank.cagnotte.exception.InvalidRequestException;
+import bforbank.cagnotte.exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class contains tests for the TransactionStatisticsService class.
+ * It runs against the embedded H2 database, with transactions dated in 2001 so that no other test writes in their range.
+ */
+@SpringBootTest
+public class TransactionStatisticsTest {
+
+    @Autowired
+    private TransactionStatisticsService statisticsService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionBatchWriter batchWriter;
+
+    /**
+     * This test checks the totals of a client and its statistics per day and per month, bucketed in UTC.
+     */
+    @Test
+    public void statisticsOfAClient() {
+        Integer clientId = clientService.createClient("Statistics", Money.ZERO).getId();
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(transaction(clientId, "10", "2001-03-05T00:00:00Z"));
+        transactions.add(transaction(clientId, "2.50", "2001-03-05T23:59:59Z"));
+        transactions.add(transaction(clientId, "4", "2001-03-20T12:00:00Z"));
+        transactions.add(transaction(clientId, "7", "2001-04-01T00:00:00Z"));
+        batchWriter.write(transactions);
+
+        TransactionStatistics totals = statisticsService.getStatistics(clientId);
+        assertEquals(4, totals.getCount());
+        assertEquals(Money.valueOf("23.50"), totals.getSum());
+        assertEquals(Money.valueOf("2.50"), totals.getMin());
+        assertEquals(Money.valueOf("10"), totals.getMax());
+        assertEquals(new BigDecimal("5.88"), totals.getAverage());
+        assertNull(totals.getStart());
+
+        List<TransactionStatistics> days = statisticsService.getStatistics(clientId, TransactionStatisticsService.Period.DAY,
+                LocalDate.of(2001, 3, 5), LocalDate.of(2001, 3, 31));
+        assertEquals(2, days.size());
+        assertEquals(LocalDate.of(2001, 3, 5), days.get(0).getStart());
+        assertEquals(2, days.get(0).getCount());
+        assertEquals(Money.valueOf("12.50"), days.get(0).getSum());
+        assertEquals(LocalDate.of(2001, 3, 20), days.get(1).getStart());
+
+        List<TransactionStatistics> months = statisticsService.getStatistics(clientId, TransactionStatisticsService.Period.MONTH,
+                LocalDate.of(2001, 3, 15), LocalDate.of(2001, 4, 1));
+        assertEquals(2, months.size());
+        assertEquals(LocalDate.of(2001, 3, 1), months.get(0).getStart());
+        assertEquals(3, months.get(0).getCount());
+        assertEquals(Money.valueOf("16.50"), months.get(0).getSum());
+        assertEquals(LocalDate.of(2001, 4, 1), months.get(1).getStart());
+        assertEquals(Money.valueOf("7"), months.get(1).getMax());
+
+        List<TransactionStatistics> allClients = statisticsService.getStatistics(null, TransactionStatisticsService.Period.MONTH,
+                LocalDate.of(2001, 1, 1), LocalDate.of(2001, 12, 31));
+        assertEquals(2, allClients.size());
+        assertEquals(3, allClients.get(0).getCount());
+    }
+
+    /**
+     * This test checks that invalid ranges and unknown clients are rejected.
+     */
+    @Test
+    public void invalidRequestsAreRejected() {
+        assertThrows(InvalidRequestException.class, () -> statisticsService.getStatistics(null,
+                TransactionStatisticsService.Period.DAY, LocalDate.of(2001, 2, 1), LocalDate.of(2001, 1, 1)));
+        assertThrows(InvalidRequestException.class, () -> statisticsService.getStatistics(null,
+                TransactionStatisticsService.Period.DAY, LocalDate.of(2000, 1, 1), LocalDate.of(2010, 1, 1)));
+        assertThrows(InvalidRequestException.class, () -> TransactionStatisticsService.Period.parse("week"));
+        assertThrows(NotFoundException.class, () -> statisticsService.getStatistics(-1));
+    }
+
+    private static Transaction transaction(Integer clientId, String amount, String createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setClientId(clientId);
+        transaction.setAmount(Money.valueOf(amount));
+        transaction.setCreatedAt(Instant.parse(createdAt));
+        return transaction;
+    }
+}